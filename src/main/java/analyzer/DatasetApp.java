@@ -20,7 +20,13 @@ import analyzer.model.TicketInfo;
 import analyzer.jira.TicketParser;
 import analyzer.bugginess.BugLinker;
 import analyzer.bugginess.BugLabeler;
-import analyzer.csv.CsvHandler;
+import analyzer.csv.DatasetCsvSink;
+import ml.arff.ArffDatasetWriter;
+import ml.arff.CSVToARFFConverter;
+import ml.dataset.ColumnarDatasetWriter;
+import ml.dataset.DatasetLoader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 public class DatasetApp {
 
@@ -48,53 +54,57 @@ public class DatasetApp {
             GitRepository repo = new GitRepository(Configuration.getProjectPath());
             MethodMetricsExtractor extractor = new MethodMetricsExtractor(repo);
 
-            //Struttura dati per commit
-            List<Commit> selectedCommits = new ArrayList<>();
-
-            if (Configuration.BASIC_DEBUG) Configuration.logger.info("Analisi delle metriche statiche avviata:");
-
-            // Itera su ogni release valida
-            for (Release rel : datasetReleases) {
-
-                if (Configuration.BASIC_DEBUG)
-                    Configuration.logger.info("Analizzo release: " + rel.getName() + " (" + rel.getReleaseDate() + ")");
-
-                // Trova il commit più recente prima della data di release
-                RevCommit commit = repo.findLastCommitBefore(rel.getReleaseDate());
-                if (commit == null) {
-                    Configuration.logger.info("Nessun commit trovato prima della release " + rel.getName());
-                    continue;
+            // CSV scritto in streaming, una release alla volta; chiuso all'uscita dal blocco anche in caso di errore
+            try (DatasetCsvSink sink = new DatasetCsvSink(Paths.get(Configuration.getOutputCsvPath()))) {
+                extractor.setDatasetSink(sink);
+
+                //Struttura dati per commit
+                List<Commit> selectedCommits = new ArrayList<>();
+
+                if (Configuration.BASIC_DEBUG) Configuration.logger.info("Analisi delle metriche statiche avviata:");
+
+                // Itera su ogni release valida
+                for (Release rel : datasetReleases) {
+
+                    if (Configuration.BASIC_DEBUG)
+                        Configuration.logger.info("Analizzo release: " + rel.getName() + " (" + rel.getReleaseDate() + ")");
+
+                    // Trova il commit più recente prima della data di release
+                    RevCommit commit = repo.findLastCommitBefore(rel.getReleaseDate());
+                    if (commit == null) {
+                        Configuration.logger.info("Nessun commit trovato prima della release " + rel.getName());
+                        continue;
+                    }
+
+                    if (Configuration.BASIC_DEBUG) {
+                        Configuration.logger.info(" Commit selezionato:");
+                        Configuration.logger.info(" → ID: " + commit.getId().getName());
+                        Configuration.logger.info(" → Data: " + commit.getAuthorIdent().getWhen());
+                        Configuration.logger.info(" → Messaggio: " + commit.getShortMessage());
+                    }
+
+                    Commit c = new Commit();
+                    c.setId(commit.getName());
+                    c.setAuthor(commit.getAuthorIdent().getName());
+                    c.setDate(commit.getAuthorIdent().getWhen().toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime());
+                    c.setMessage(commit.getShortMessage());
+                    c.setFilesTouched(null);
+                    selectedCommits.add(c);
+
+                    extractor.setCurrentRelease(rel.getName()); // Imposta release corrente
+                    extractor.setCurrentReleaseDate(rel.getReleaseDate());
+
+                    if (Configuration.CHECKOUT_FREE_SNAPSHOT) {
+                        extractor.analyzeSnapshot(commit, rel); // Legge lo snapshot dal tree del commit
+                    } else {
+                        repo.checkoutCommit(commit); // Fai il checkout al commit
+                        extractor.analyzeProject(Configuration.getProjectPath(), rel);
+                    }
+
+                    CsvDebugWriter.writeCommitCsv(Configuration.getCommitDebugCsvPath(), selectedCommits);
                 }
-
-                if (Configuration.BASIC_DEBUG) {
-                    Configuration.logger.info(" Commit selezionato:");
-                    Configuration.logger.info(" → ID: " + commit.getId().getName());
-                    Configuration.logger.info(" → Data: " + commit.getAuthorIdent().getWhen());
-                    Configuration.logger.info(" → Messaggio: " + commit.getShortMessage());
-                }
-
-                Commit c = new Commit();
-                c.setId(commit.getName());
-                c.setAuthor(commit.getAuthorIdent().getName());
-                c.setDate(commit.getAuthorIdent().getWhen().toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime());
-                c.setMessage(commit.getShortMessage());
-                c.setFilesTouched(null);
-                selectedCommits.add(c);
-
-               repo.checkoutCommit(commit); // Fai il checkout al commit
-
-                extractor.setCurrentRelease(rel.getName()); // Imposta release corrente
-                extractor.setCurrentReleaseDate(rel.getReleaseDate());
-                extractor.analyzeProject(Configuration.getProjectPath(), rel);
-
-                CsvDebugWriter.writeCommitCsv(Configuration.getCommitDebugCsvPath(), selectedCommits);
             }
 
-            // Scrivi i risultati finali nel file CSV
-            extractor.exportResults(Configuration.getOutputCsvPath());
-
-            // Chiude correttamente la connessione con la repository Git
-            repo.close();
             methods = extractor.getAnalyzedMethods();
 
             if (Configuration.BASIC_DEBUG) Configuration.logger.info("Inizio fase di etichettatura ...");
@@ -109,11 +119,25 @@ public class DatasetApp {
 
             // 3. Etichetta i metodi
             List<Release> allReleases = GetReleaseInfo.getAllReleases();
-            BugLabeler.labelMethods(methods, tickets, repo, allReleases);
+            BugLabeler labeler = new BugLabeler(methods, repo, allReleases);
+            labeler.labelMethods(tickets);
+            repo.logCacheStats();
+
+            // Chiude correttamente la connessione con la repository Git (linking e labeling la usano ancora)
+            repo.close();
+
+            // 4. Etichette nel file compatto, poi applicate alla colonna Bugginess del CSV
+            Path labelsPath = Paths.get(Configuration.getOutputLabelsPath());
+            DatasetCsvSink.writeLabels(labelsPath, methods);
+            DatasetCsvSink.applyLabels(Paths.get(Configuration.getOutputCsvPath()), labelsPath);
+
+            // 5. ARFF scritto direttamente dai metodi, senza rileggere il CSV
+            Path csvPath = Paths.get(Configuration.getOutputCsvPath());
+            String relation = CSVToARFFConverter.relationName(csvPath);
+            ArffDatasetWriter.write(Paths.get(Configuration.getOutputArffPath()), relation, methods, Configuration.SPARSE_ARFF);
 
-            // 4. Riscrivi CSV aggiornato
-            CsvHandler csvHandler = new CsvHandler();
-            csvHandler.writeCsv(Configuration.getOutputCsvPath(), methods);
+            // 6. Dataset colonnare accanto all'ARFF, mappato in memoria dalle analisi ML (scritto dopo l'ARFF, quindi aggiornato)
+            ColumnarDatasetWriter.write(DatasetLoader.columnarPathFor(Configuration.getOutputArffPath()), relation, methods);
 
             if (Configuration.BASIC_DEBUG) Configuration.logger.info("Analisi completata. File salvato in: " + Configuration.getOutputCsvPath());
 
@@ -8,62 +8,93 @@ import analyzer.model.Release;
 import util.Configuration;
 import org.eclipse.jgit.revwalk.RevCommit;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 
 public class BugLabeler {
 
     private static final String TICKET_PREFIX = "Ticket ";
 
-    private BugLabeler() {
-        // Utility class → no instance
+    private final GitRepository repo;
+    private final List<Release> releases;
+    private final MethodTouchAnalyzer analyzer;
+    private final int threadCount;
+
+    // Indici costruiti una volta sul dataset: metodi per file@release e release presenti
+    private final Map<String, List<MethodInfo>> methodsByFileAndRelease;
+    private final Set<String> availableReleases;
+
+    public BugLabeler(List<MethodInfo> methods, GitRepository repo, List<Release> releases) {
+        this(methods, repo, releases, Configuration.LABELING_THREADS);
+    }
+
+    public BugLabeler(List<MethodInfo> methods, GitRepository repo, List<Release> releases, int threadCount) {
+        this.repo = repo;
+        this.releases = releases;
+        this.threadCount = threadCount;
+        this.analyzer = new MethodTouchAnalyzer(repo);
+        this.methodsByFileAndRelease = groupMethodsByFileAndRelease(methods);
+
+        this.availableReleases = new HashSet<>();
+        for (MethodInfo m : methods) {
+            availableReleases.add(m.getReleaseId());
+        }
     }
 
     private static Map<String, List<MethodInfo>> groupMethodsByFileAndRelease(List<MethodInfo> methods) {
         Map<String, List<MethodInfo>> map = new HashMap<>();
+        // Path relativo calcolato una volta per file (id nella PathTable), non per metodo
+        Map<Integer, String> fileByPathId = new HashMap<>();
         for (MethodInfo m : methods) {
-            String filePath = extractFileFromMethodName(m.getMethodName());
+            String filePath = m.getPathId() < 0
+                    ? extractRelativePath(m.getSimpleName())
+                    : fileByPathId.computeIfAbsent(m.getPathId(), id -> extractRelativePath(m.getFilePath()));
             String key = filePath + "@" + m.getReleaseId();
             map.computeIfAbsent(key, k -> new ArrayList<>()).add(m);
         }
         return map;
     }
 
-    private static String extractFileFromMethodName(String methodName) {
-        int idx = methodName.lastIndexOf(".java");
+    private static String extractRelativePath(String filePath) {
+        int idx = filePath.lastIndexOf(".java");
         if (idx != -1) {
-            String relative = methodName.substring(0, idx + 5);
-            if (relative.contains(Configuration.getProjectSubstring())) {
-                return relative.substring(relative.indexOf(Configuration.PROJECT1_SUBSTRING) + Configuration.PROJECT1_SUBSTRING.length());
+            String relative = filePath.substring(0, idx + 5);
+            String projectSubstring = Configuration.getProjectSubstring();
+            if (relative.contains(projectSubstring)) {
+                return relative.substring(relative.indexOf(projectSubstring) + projectSubstring.length());
             }
             return relative;
         }
-        return methodName;
+        return filePath;
     }
 
-    public static void labelMethods(List<MethodInfo> methods, Map<String, TicketInfo> tickets, GitRepository repo, List<Release> releases) {
+    public void labelMethods(Map<String, TicketInfo> tickets) {
 
         int buggyFromAV = 0;
         int buggyFromProportion = 0;
 
-        // 1. Raggruppa i metodi per file+release
-        Map<String, List<MethodInfo>> methodsByFileAndRelease = groupMethodsByFileAndRelease(methods);
-
-        // 2. Inizializza helper
-        MethodTouchAnalyzer analyzer = new MethodTouchAnalyzer(repo);
-
-        // 3. Inizializza ProportionEstimator per stimare IV
+        // 1. Inizializza ProportionEstimator per stimare IV
         ProportionEstimator estimator = new ProportionEstimator(releases);
         registerValidTickets(tickets, estimator);
 
-        // 4. Colleziona metodi etichettati per debug
-        List<String[]> debugRows = new ArrayList<>();
+        // Risolve in blocco tutti i commit dei ticket con la RevWalk condivisa del repository
+        Set<String> ticketCommits = new HashSet<>();
+        for (TicketInfo t : tickets.values()) {
+            ticketCommits.addAll(t.getCommitIds());
+        }
+        repo.resolveCommits(ticketCommits);
 
-        // 5. Per ogni ticket...
+        // 2. Stima delle buggyReleases e filtro dei ticket, in sequenza (la stima aggiorna i ticket)
+        List<TicketInfo> processable = new ArrayList<>();
+        List<Set<String>> buggyReleasesByTicket = new ArrayList<>();
         for (TicketInfo ticket : tickets.values()) {
 
             Set<String> buggyReleases = estimateBuggyReleases(ticket, estimator);
 
-            if (!isProcessable(ticket, buggyReleases, methods)) {
+            if (!isProcessable(ticket, buggyReleases)) {
                 if (Configuration.LABELING_DEBUG && Configuration.logger.isLoggable(Level.INFO)) {
                     Configuration.logger.info(String.format("%s%s: ticket ignorato (non processabile)", TICKET_PREFIX, ticket.getId()));
                 }
@@ -74,7 +105,19 @@ public class BugLabeler {
                 Configuration.logger.info(String.format("%s%s: buggyReleases stimate → %s", TICKET_PREFIX, ticket.getId(), buggyReleases));
             }
 
-            int[] result = processTicketCommits(ticket, repo, buggyReleases, methodsByFileAndRelease, analyzer, debugRows);
+            processable.add(ticket);
+            buggyReleasesByTicket.add(buggyReleases);
+        }
+
+        // 3. Metodi toccati dai commit di ogni ticket, calcolati in parallelo (sola lettura)
+        List<List<Label>> labelsByTicket = collectAllLabels(processable, buggyReleasesByTicket);
+
+        // 4. Etichette applicate in ordine di ticket: stessi metodi marcati, contatori e righe di debug del percorso sequenziale
+        List<String[]> debugRows = new ArrayList<>();
+        for (int i = 0; i < processable.size(); i++) {
+            TicketInfo ticket = processable.get(i);
+
+            int[] result = applyLabels(ticket, labelsByTicket.get(i), debugRows);
             buggyFromAV += result[0];
             buggyFromProportion += result[1];
 
@@ -87,7 +130,7 @@ public class BugLabeler {
             }
         }
 
-        // 6. CSV di debug opzionale
+        // 5. CSV di debug opzionale
         writeDebugCsv(debugRows);
     }
 
@@ -105,10 +148,10 @@ public class BugLabeler {
         }
     }
 
-    private static boolean isProcessable(TicketInfo ticket, Set<String> buggyReleases, List<MethodInfo> methods) {
+    private boolean isProcessable(TicketInfo ticket, Set<String> buggyReleases) {
         if (ticket.getFixVersion() == null || ticket.getCommitIds().isEmpty()) return false;
         if (buggyReleases.isEmpty()) return false;
-        return filterValidBuggyReleases(ticket, buggyReleases, methods);
+        return filterValidBuggyReleases(ticket, buggyReleases);
     }
 
     private static Set<String> estimateBuggyReleases(TicketInfo ticket, ProportionEstimator estimator) {
@@ -151,24 +194,19 @@ public class BugLabeler {
         Set<String> releases = new HashSet<>();
         if (estIV == null || fv == null) return releases;
 
-        ReleaseIndexMapper mapper = estimator.getMapper();
-        int ivIndex = mapper.getIndex(estIV);
-        int fvIndex = mapper.getIndex(fv);
+        ReleaseTimeline timeline = estimator.getTimeline();
+        int ivIndex = timeline.getIndex(estIV);
+        int fvIndex = timeline.getIndex(fv);
 
         for (int i = ivIndex; i < fvIndex; i++) {
-            String rel = mapper.getReleaseName(i);
+            String rel = timeline.getReleaseName(i);
             if (rel != null) releases.add(rel);
         }
 
         return releases;
     }
 
-    private static boolean filterValidBuggyReleases(TicketInfo ticket, Set<String> buggyReleases, List<MethodInfo> methods) {
-        Set<String> availableReleases = new HashSet<>();
-        for (MethodInfo m : methods) {
-            availableReleases.add(m.getReleaseId());
-        }
-
+    private boolean filterValidBuggyReleases(TicketInfo ticket, Set<String> buggyReleases) {
         buggyReleases.retainAll(availableReleases);
 
         if (buggyReleases.isEmpty()) {
@@ -181,56 +219,93 @@ public class BugLabeler {
         return true;
     }
 
-    private static int[] processTicketCommits(
-            TicketInfo ticket,
-            GitRepository repo,
-            Set<String> buggyReleases,
-            Map<String, List<MethodInfo>> methodsByFileAndRelease,
-            MethodTouchAnalyzer analyzer,
-            List<String[]> debugRows
-    ) {
-        int[] counters = new int[]{0, 0}; // counters[0] = buggyFromAV, counters[1] = buggyFromProportion
+    // Distribuisce i ticket sul pool di worker; le liste tornano nello stesso ordine dei ticket
+    private List<List<Label>> collectAllLabels(List<TicketInfo> processable, List<Set<String>> buggyReleasesByTicket) {
+        if (threadCount <= 1) {
+            List<List<Label>> results = new ArrayList<>(processable.size());
+            for (int i = 0; i < processable.size(); i++) {
+                results.add(collectLabels(processable.get(i), buggyReleasesByTicket.get(i)));
+            }
+            return results;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<List<Label>>> futures = new ArrayList<>(processable.size());
+            for (int i = 0; i < processable.size(); i++) {
+                TicketInfo ticket = processable.get(i);
+                Set<String> buggyReleases = buggyReleasesByTicket.get(i);
+                futures.add(pool.submit(() -> collectLabels(ticket, buggyReleases)));
+            }
+
+            List<List<Label>> results = new ArrayList<>(futures.size());
+            for (Future<List<Label>> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Etichettatura interrotta", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Errore durante l'etichettatura dei ticket", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Coppie (metodo, commit) toccate dal ticket, nell'ordine in cui le visiterebbe il percorso sequenziale.
+    // Non modifica i metodi: può girare in parallelo su ticket diversi.
+    private List<Label> collectLabels(TicketInfo ticket, Set<String> buggyReleases) {
+        List<Label> labels = new ArrayList<>();
 
         for (String commitHash : ticket.getCommitIds()) {
-            RevCommit commit = resolveCommit(commitHash, repo);
+            RevCommit commit = resolveCommit(commitHash);
             if (commit == null) continue;
 
             Set<String> files = new HashSet<>(ticket.getFixedFiles());
+            Set<String> touchedByCommit = touchedFiles(commit);
             for (String filePath : files) {
+                // File toccati da altri commit del ticket: questo commit non può marcarne i metodi
+                if (!touchedByCommit.contains(filePath)) continue;
+
                 for (String releaseId : buggyReleases) {
                     String key = filePath + "@" + releaseId;
                     if (!methodsByFileAndRelease.containsKey(key)) continue;
 
                     List<MethodInfo> candidates = methodsByFileAndRelease.get(key);
-                    Set<MethodInfo> touched = analyzer.getTouchedMethods(commit, filePath, candidates);
-
-                    processTouchedMethods(touched, ticket, commit, debugRows, counters);
+                    for (MethodInfo m : analyzer.getTouchedMethods(commit, filePath, candidates)) {
+                        labels.add(new Label(m, commit));
+                    }
                 }
             }
         }
 
-        return counters;
+        return labels;
     }
 
-    private static RevCommit resolveCommit(String commitHash, GitRepository repo) {
+    private Set<String> touchedFiles(RevCommit commit) {
         try {
-            return repo.getGit().log()
-                    .add(repo.getGit().getRepository().resolve(commitHash))
-                    .call().iterator().next();
+            return repo.getTouchedJavaFiles(commit);
         } catch (Exception e) {
+            Configuration.logger.severe(String.format("Errore leggendo i file toccati dal commit %s", commit.getName()));
+            return Collections.emptySet();
+        }
+    }
+
+    private RevCommit resolveCommit(String commitHash) {
+        RevCommit commit = repo.resolveCommit(commitHash);
+        if (commit == null) {
             Configuration.logger.severe(String.format("Errore leggendo commit %s", commitHash));
-            return null;
         }
+        return commit;
     }
 
-    private static void processTouchedMethods(
-            Set<MethodInfo> touched,
-            TicketInfo ticket,
-            RevCommit commit,
-            List<String[]> debugRows,
-            int[] counters
-    ) {
-        for (MethodInfo m : touched) {
+    private static int[] applyLabels(TicketInfo ticket, List<Label> labels, List<String[]> debugRows) {
+        int[] counters = new int[]{0, 0}; // counters[0] = buggyFromAV, counters[1] = buggyFromProportion
+
+        for (Label label : labels) {
+            MethodInfo m = label.method;
             if (!m.isBugginess()) {
                 m.setBugginess(true);
                 if (!ticket.getAffectedVersions().isEmpty()) {
@@ -242,13 +317,26 @@ public class BugLabeler {
                 if (Configuration.LABELING_DEBUG) {
                     debugRows.add(new String[]{
                             ticket.getId(),
-                            commit.getName(),
+                            label.commit.getName(),
                             m.getMethodName(),
                             m.getReleaseId()
                     });
                 }
             }
         }
+
+        return counters;
+    }
+
+    // Metodo toccato da un commit di fix, in attesa di essere marcato buggy
+    private static final class Label {
+        private final MethodInfo method;
+        private final RevCommit commit;
+
+        private Label(MethodInfo method, RevCommit commit) {
+            this.method = method;
+            this.commit = commit;
+        }
     }
 
 }
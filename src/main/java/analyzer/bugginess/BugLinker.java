@@ -10,9 +10,13 @@ import org.eclipse.jgit.revwalk.RevCommit;
 import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.time.LocalDate;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class BugLinker {
 
@@ -41,20 +45,22 @@ public class BugLinker {
         CsvTicketCommitWriter.write(Configuration.getDebugTicketCommitsPath(), tickets);
     }
 
+    // Chiavi JIRA nel messaggio (es. OPENJPA-123): il numero è preso per intero, quindi OPENJPA-12 non combacia dentro OPENJPA-123
+    private static final Pattern TICKET_KEY = Pattern.compile("(?<![A-Za-z0-9])[A-Za-z][A-Za-z0-9_]*-\\d+(?!\\d)");
+
+    // Una sola passata sul log: ogni messaggio viene tokenizzato e le chiavi trovate cercate nella mappa dei ticket
     public void linkCommitsToTickets(Map<String, TicketInfo> tickets) throws TicketLinkageException {
 
         try {
-            for (Map.Entry<String, TicketInfo> entry : tickets.entrySet()) {
-                String ticketId = entry.getKey();
-                TicketInfo ticket = entry.getValue();
-
-                Iterable<RevCommit> commits = repo.getCommitsByMessageContaining(ticketId);
+            for (RevCommit commit : repo.getAllCommits()) {
+                Set<TicketInfo> linked = findReferencedTickets(commit.getFullMessage(), tickets);
+                if (linked.isEmpty()) continue;
 
-                for (RevCommit commit : commits) {
-                    String commitHash = commit.getName();
-                    ticket.addCommitId(commitHash);
+                // File toccati calcolati una volta per commit, anche se cita più ticket
+                Set<String> javaFiles = repo.getTouchedJavaFiles(commit);
 
-                    Set<String> javaFiles = repo.getTouchedJavaFiles(commit);
+                for (TicketInfo ticket : linked) {
+                    ticket.addCommitId(commit.getName());
                     for (String file : javaFiles) {
                         ticket.addFixedFile(file);
                     }
@@ -65,6 +71,18 @@ public class BugLinker {
         }
     }
 
+    private static Set<TicketInfo> findReferencedTickets(String message, Map<String, TicketInfo> tickets) {
+        Set<TicketInfo> found = new LinkedHashSet<>();
+        Matcher matcher = TICKET_KEY.matcher(message);
+        while (matcher.find()) {
+            TicketInfo ticket = tickets.get(matcher.group().toUpperCase(Locale.ROOT));
+            if (ticket != null) {
+                found.add(ticket);
+            }
+        }
+        return found;
+    }
+
     public void applyMissingCommitLinkageHeuristic(Map<String, TicketInfo> tickets) throws TicketLinkageException {
 
         try {
@@ -90,21 +108,22 @@ public class BugLinker {
 
             Set<String> touchedFiles = repo.getTouchedJavaFiles(commit);
 
+            // se il commit tocca un file già toccato da commit collegati
+            boolean isFileMatch = false;
             for (String file : touchedFiles) {
-                // se il file è stato toccato da commit già collegati
-                boolean isFileMatch = ticket.getFixedFiles().contains(file);
-
-                // se autore combacia con commit già collegato
-                boolean isAuthorMatch = repo.isAuthorInTicket(commit, ticket);
-
-                if (isFileMatch && isAuthorMatch) {
-                    ticket.addCommitId(commit.getName());
-                    for (String f : touchedFiles) {
-                        ticket.addFixedFile(f);
-                    }
+                if (ticket.getFixedFiles().contains(file)) {
+                    isFileMatch = true;
                     break;
                 }
             }
+
+            // se autore combacia con commit già collegato (autori letti dalla cache del repository)
+            if (isFileMatch && repo.isAuthorInTicket(commit, ticket)) {
+                ticket.addCommitId(commit.getName());
+                for (String f : touchedFiles) {
+                    ticket.addFixedFile(f);
+                }
+            }
         }
     }
 
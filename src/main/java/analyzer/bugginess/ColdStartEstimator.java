@@ -1,14 +1,30 @@
 package analyzer.bugginess;
 
+import analyzer.jira.JiraSnapshotStore;
 import analyzer.jira.TicketParser;
 import analyzer.model.TicketInfo;
-import analyzer.model.Release;
 import util.Configuration;
 
-import java.time.LocalDate;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 
+// P di cold start dai progetti di riferimento. I campioni di ogni progetto vengono salvati su disco insieme
+// alla versione dello snapshot JIRA da cui derivano e riusati finché la cache non viene invalidata
+// (o lo snapshot del progetto cambia); i progetti da ricalcolare vengono scaricati in parallelo.
 public class ColdStartEstimator {
 
     private ColdStartEstimator(){
@@ -17,10 +33,70 @@ public class ColdStartEstimator {
 
     private static final String[] PROJECTS = {"AVRO", "OPENJPA", "ZOOKEEPER", "SYNCOPE", "TAJO"};
 
+    // Da incrementare quando cambia il calcolo delle proporzioni
+    private static final int FORMAT_VERSION = 1;
+
+    // complete = false: calcolo interrotto da un errore, campioni raccolti fino a quel punto (non salvati in cache)
+    private record ProjectSamples(String snapshotVersion, List<Double> samples, boolean complete) {}
+
+    private static Double coldStartP; // calcolata una volta per processo
+
+    // P di cold start, calcolata alla prima richiesta e poi condivisa
+    public static synchronized double getColdStartP() {
+        if (coldStartP == null) {
+            if (Configuration.RECOMPUTE_COLD_START) invalidate();
+            coldStartP = computeColdStartP();
+        }
+        return coldStartP;
+    }
+
+    // Scarta la P calcolata e i campioni salvati: la prossima richiesta riscarica tutti i progetti
+    public static synchronized void invalidate() {
+        coldStartP = null;
+        Path file = cacheFile();
+        if (file == null) return;
+
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            Configuration.logger.log(Level.WARNING, String.format("Impossibile cancellare la cache del cold start: %s", file), e);
+        }
+    }
+
     public static double computeColdStartP() {
+        Map<String, ProjectSamples> cached = loadCache();
+        Map<String, ProjectSamples> current = new LinkedHashMap<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(PROJECTS.length);
+        try {
+            List<Future<ProjectSamples>> futures = new ArrayList<>(PROJECTS.length);
+            for (String project : PROJECTS) {
+                futures.add(pool.submit(() -> samplesFor(project, cached.get(project))));
+            }
+            for (int i = 0; i < PROJECTS.length; i++) {
+                current.put(PROJECTS[i], futures.get(i).get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Calcolo del cold start interrotto", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Errore nel calcolo del cold start", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Map<String, ProjectSamples> complete = new LinkedHashMap<>();
+        current.forEach((project, samples) -> {
+            if (samples.complete()) complete.put(project, samples);
+        });
+        if (!complete.equals(cached)) {
+            saveCache(complete);
+        }
+
+        // Stesso ordine di prima (progetti in sequenza), quindi stessa somma
         List<Double> proportions = new ArrayList<>();
-        for (String project : PROJECTS) {
-            proportions.addAll(extractProportionsForProject(project));
+        for (ProjectSamples samples : current.values()) {
+            proportions.addAll(samples.samples());
         }
 
         if (proportions.isEmpty()) return 1.0;
@@ -29,15 +105,31 @@ public class ColdStartEstimator {
         return sum / proportions.size();
     }
 
+    // Campioni salvati se lo snapshot non è cambiato (o non è confrontabile), altrimenti ricalcolati.
+    // Se il ricalcolo fallisce valgono, come senza cache, i campioni raccolti fino all'errore
+    private static ProjectSamples samplesFor(String project, ProjectSamples cached) throws Exception {
+        JiraSnapshotStore store = JiraSnapshotStore.getDefault();
+        String version = store.getSnapshotVersion(project);
+        if (cached != null && (version == null || version.equals(cached.snapshotVersion()))) {
+            return cached;
+        }
+
+        List<Double> samples = new ArrayList<>();
+        if (!extractProportionsForProject(project, samples)) {
+            return new ProjectSamples(null, samples, false);
+        }
+        return new ProjectSamples(store.getSnapshotVersion(project), samples, true);
+    }
+
 
-    private static Double calculateProportion(TicketInfo t, ReleaseIndexMapper mapper, List<Release> releases) {
+    private static Double calculateProportion(TicketInfo t, ReleaseTimeline timeline) {
         if (t.getAffectedVersions().isEmpty()) return null;
 
         String av = t.getAffectedVersions().get(0);
         String fv = t.getFixVersionName();
-        int avIdx = mapper.getIndex(av);
-        int fvIdx = mapper.getIndex(fv);
-        int ovIdx = findClosestReleaseBefore(t.getOpeningVersion(), releases);
+        int avIdx = timeline.getIndex(av);
+        int fvIdx = timeline.getIndex(fv);
+        int ovIdx = timeline.findClosestReleaseBefore(t.getOpeningVersion());
 
         if (avIdx == -1 || fvIdx == -1 || ovIdx == -1) return null;
 
@@ -46,33 +138,87 @@ public class ColdStartEstimator {
                 : (double) (fvIdx - avIdx) / (fvIdx - ovIdx);
     }
 
-    private static List<Double> extractProportionsForProject(String project) {
-        List<Double> result = new ArrayList<>();
+    // Aggiunge a result le proporzioni valide del progetto; false se un errore ha interrotto il calcolo
+    private static boolean extractProportionsForProject(String project, List<Double> result) {
         try {
             Map<String, TicketInfo> tickets = TicketParser.parseTicketsFromProject(project);
-            List<Release> releases = TicketParser.getReleasesFromProject(project);
-            ReleaseIndexMapper mapper = new ReleaseIndexMapper(releases);
+            ReleaseTimeline timeline = new ReleaseTimeline(TicketParser.getReleasesFromProject(project));
 
             for (TicketInfo t : tickets.values()) {
-                Double p = calculateProportion(t, mapper, releases);
+                Double p = calculateProportion(t, timeline);
                 if (p != null && p > 0 && p <= 1.5) {
                     result.add(p);
                 }
             }
         } catch (Exception e) {
             Configuration.logger.log(Level.SEVERE, String.format("Errore analizzando il progetto %s", project), e);
+            return false;
+        }
+        return true;
+    }
+
+    private static Path cacheFile() {
+        return Configuration.COLD_START_CACHE_FILE == null ? null : Paths.get(Configuration.COLD_START_CACHE_FILE);
+    }
+
+    // Formato: versione, numero di progetti, poi per ogni progetto nome, versione dello snapshot ("" se assente) e campioni
+    private static Map<String, ProjectSamples> loadCache() {
+        Map<String, ProjectSamples> cached = new LinkedHashMap<>();
+        Path file = cacheFile();
+        if (file == null) return cached;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) return cached;
+
+            int projectCount = in.readInt();
+            for (int i = 0; i < projectCount; i++) {
+                String project = in.readUTF();
+                String version = in.readUTF();
+                int count = in.readInt();
+                List<Double> samples = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    samples.add(in.readDouble());
+                }
+                cached.put(project, new ProjectSamples(version.isEmpty() ? null : version, samples, true));
+            }
+            return cached;
+
+        } catch (NoSuchFileException e) {
+            return cached;
+        } catch (IOException e) {
+            Configuration.logger.log(Level.WARNING, String.format("Cache del cold start illeggibile: %s", file), e);
+            return new LinkedHashMap<>();
         }
-        return result;
     }
 
+    private static void saveCache(Map<String, ProjectSamples> samplesByProject) {
+        Path file = cacheFile();
+        if (file == null) return;
 
-    private static int findClosestReleaseBefore(LocalDate targetDate, List<Release> releases) {
-        int bestIdx = -1;
-        for (int i = 0; i < releases.size(); i++) {
-            if (!releases.get(i).getReleaseDate().isAfter(targetDate)) {
-                bestIdx = i;
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(samplesByProject.size());
+                for (Map.Entry<String, ProjectSamples> e : samplesByProject.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    String version = e.getValue().snapshotVersion();
+                    out.writeUTF(version == null ? "" : version);
+                    out.writeInt(e.getValue().samples().size());
+                    for (double p : e.getValue().samples()) {
+                        out.writeDouble(p);
+                    }
+                }
             }
+
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (IOException e) {
+            Configuration.logger.log(Level.WARNING, String.format("Impossibile scrivere la cache del cold start: %s", file), e);
         }
-        return bestIdx;
     }
+
 }
@@ -2,19 +2,20 @@ package analyzer.bugginess;
 
 import analyzer.model.MethodInfo;
 import analyzer.git.GitRepository;
+import analyzer.metrics.MethodRangeIndex;
 import util.Configuration;
-import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.diff.DiffFormatter;
 import org.eclipse.jgit.diff.Edit;
-import org.eclipse.jgit.diff.RawTextComparator;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.util.io.DisabledOutputStream;
 import java.util.*;
 
 public class MethodTouchAnalyzer {
 
     private final GitRepository repo;
 
+    // Un indice per lista di candidati (file@release): le liste restano le stesse per tutta l'etichettatura.
+    // Sincronizzata perché i ticket possono essere analizzati in parallelo.
+    private final Map<List<MethodInfo>, MethodRangeIndex> indexes = Collections.synchronizedMap(new IdentityHashMap<>());
+
     public MethodTouchAnalyzer(GitRepository repo) {
         this.repo = repo;
     }
@@ -23,38 +24,15 @@ public class MethodTouchAnalyzer {
         Set<MethodInfo> touched = new HashSet<>();
 
         try {
+            // Diff del commit letto dalla cache condivisa: calcolato una volta per tutti i file e le release
+            List<Edit> edits = repo.getDiffService().getEdits(commit).get(filePath);
+            if (edits == null) return touched;
 
-            if (commit.getParentCount() == 0) return touched;
-            RevCommit parent = repo.parseCommit(commit);
-
-            try (DiffFormatter df = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
-                df.setRepository(repo.getGit().getRepository());
-                df.setDetectRenames(true);
-                df.setDiffComparator(RawTextComparator.DEFAULT);
-
-                List<DiffEntry> diffs = df.scan(parent.getTree(), commit.getTree());
-
-                for (DiffEntry diff : diffs) {
-                    String changedFile = diff.getNewPath();
-                    if (!changedFile.equals(filePath)) continue;
-
-                    List<Edit> edits = df.toFileHeader(diff).toEditList();
-
-                    for (MethodInfo method : candidateMethods) {
-                        int start = method.getStartLine();
-                        int end = method.getEndLine();
-
-                        for (Edit edit : edits) {
-                            boolean isTouched = (edit.getEndB() > start && edit.getBeginB() < end);
-                            if (isTouched) {
-                                touched.add(method);
-                                break;
-                            }
-                        }
-                    }
-                }
-
+            MethodRangeIndex index = indexes.computeIfAbsent(candidateMethods, MethodRangeIndex::new);
+            for (Edit edit : edits) {
+                index.forEachOverlapping(edit.getBeginB(), edit.getEndB(), touched::add);
             }
+
         } catch (Exception e) {
             Configuration.logger.severe(String.format("Errore in getTouchedMethods() per commit %s", commit.getName()));
             e.printStackTrace();
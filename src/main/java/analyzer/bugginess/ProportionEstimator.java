@@ -6,25 +6,27 @@ import util.Configuration;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 
 public class ProportionEstimator {
 
     private static final int MIN_VALID_TICKETS = 5;
-    private final Map<String, Release> releaseMap;
-    private final ReleaseIndexMapper mapper;
+    private final ReleaseTimeline timeline;
     private final List<TicketInfo> validTicketsWithAV = new ArrayList<>();
-    private double coldStartP;
+
+    // Somma e conteggio delle proporzioni aggiornati alla registrazione: P incrementale in O(1)
+    private double proportionSum;
+    private int proportionCount;
+
+    // Proporzioni per data di fix (solo per la modalità "fixed before" / finestra mobile), con somme prefisse
+    private final List<LocalDate> fixDates = new ArrayList<>();
+    private final List<Double> proportions = new ArrayList<>();
+    private LocalDate[] sortedFixDates;
+    private double[] prefixSums;
 
     public ProportionEstimator(List<Release> orderedReleases) {
-        this.mapper = new ReleaseIndexMapper(orderedReleases);
-        this.releaseMap = new HashMap<>();
-        for (Release r : orderedReleases) {
-            releaseMap.put(r.getName(), r);
-        }
-        this.coldStartP = ColdStartEstimator.computeColdStartP();
+        this.timeline = new ReleaseTimeline(orderedReleases);
     }
 
     public void registerValidTicket(TicketInfo ticket) {
@@ -39,7 +41,7 @@ public class ProportionEstimator {
 
         String avName = ticket.getAffectedVersions().stream()
                 .map(this::normalizeVersionName)
-                .filter(name -> mapper.getIndex(name) != -1)
+                .filter(name -> timeline.getIndex(name) != -1)
                 .findFirst()
                 .orElse(null);
 
@@ -47,9 +49,9 @@ public class ProportionEstimator {
             return;
         }
 
-        int fvIdx = mapper.getIndex(normalizeVersionName(ticket.getFixVersionName()));
-        int ivIdx = mapper.getIndex(avName);
-        int ovIdx = findClosestReleaseBefore(ticket.getOpeningVersion());
+        int fvIdx = timeline.getIndex(normalizeVersionName(ticket.getFixVersionName()));
+        int ivIdx = timeline.getIndex(avName);
+        int ovIdx = timeline.findClosestReleaseBefore(ticket.getOpeningVersion());
 
         if (fvIdx == -1 || ivIdx == -1 || ovIdx == -1) {
             return;
@@ -57,26 +59,74 @@ public class ProportionEstimator {
 
         ticket.setInjectedVersion(ticket.getOpeningVersion());
         validTicketsWithAV.add(ticket);
+
+        double p = proportionOf(ticket);
+        proportionSum += p;
+        proportionCount++;
+
+        fixDates.add(ticket.getFixVersion());
+        proportions.add(p);
+        sortedFixDates = null; // da ricostruire alla prossima stima
+    }
+
+    // Stessi indici usati finora per la media: prima AV e FV così come arrivano da JIRA, OV dalla data di apertura
+    private double proportionOf(TicketInfo t) {
+        int iv = timeline.getIndex(t.getAffectedVersions().get(0));
+        int fv = timeline.getIndex(t.getFixVersionName());
+        int ov = timeline.findClosestReleaseBefore(t.getOpeningVersion());
+
+        if (fv == ov) {
+            return fv - iv;
+        }
+        return (double) (fv - iv) / (fv - ov);
     }
 
     private double computeIncrementalP() {
-        double sum = 0;
-        int count = 0;
+        return proportionCount == 0 ? 1.0 : proportionSum / proportionCount;
+    }
+
+    // P dai soli ticket con fix prima di quello da stimare (eventualmente gli ultimi PROPORTION_WINDOW); null se sono troppo pochi
+    private Double computeFixedBeforeP(TicketInfo ticket) {
+        if (ticket.getFixVersion() == null) return null;
+        ensureSortedByFixDate();
+
+        int end = countFixedBefore(ticket.getFixVersion());
+        int start = Configuration.PROPORTION_WINDOW > 0 ? Math.max(0, end - Configuration.PROPORTION_WINDOW) : 0;
+        if (end - start < MIN_VALID_TICKETS) return null;
+
+        return (prefixSums[end] - prefixSums[start]) / (end - start);
+    }
+
+    private void ensureSortedByFixDate() {
+        if (sortedFixDates != null) return;
 
-        for (TicketInfo t : validTicketsWithAV) {
-            int iv = mapper.getIndex(t.getAffectedVersions().get(0));
-            int fv = mapper.getIndex(t.getFixVersionName());
-            int ov = findClosestReleaseBefore(t.getOpeningVersion());
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < fixDates.size(); i++) {
+            if (fixDates.get(i) != null) order.add(i);
+        }
+        order.sort(Comparator.comparing(fixDates::get)); // stabile: a parità di data resta l'ordine di registrazione
+
+        sortedFixDates = new LocalDate[order.size()];
+        prefixSums = new double[order.size() + 1];
+        for (int k = 0; k < order.size(); k++) {
+            sortedFixDates[k] = fixDates.get(order.get(k));
+            prefixSums[k + 1] = prefixSums[k] + proportions.get(order.get(k));
+        }
+    }
 
-            if (fv == ov) {
-                sum += fv - iv;
+    // Numero di ticket registrati con data di fix strettamente precedente
+    private int countFixedBefore(LocalDate date) {
+        int low = 0;
+        int high = sortedFixDates.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedFixDates[mid].isBefore(date)) {
+                low = mid + 1;
             } else {
-                sum += (double) (fv - iv) / (fv - ov);
+                high = mid;
             }
-            count++;
         }
-
-        return count == 0 ? 1.0 : sum / count;
+        return low;
     }
 
     public String estimateIV(TicketInfo ticket) {
@@ -84,12 +134,18 @@ public class ProportionEstimator {
         if (Configuration.LABELING_DEBUG) Configuration.logger.info("   → FV: " + ticket.getFixVersionName() + ", OV: " + ticket.getOpeningVersion());
 
         String normalizedFV = normalizeVersionName(ticket.getFixVersionName());
-        int fvIndex = mapper.getIndex(normalizedFV);
+        int fvIndex = timeline.getIndex(normalizedFV);
 
-        int ovIndex = findClosestReleaseBefore(ticket.getOpeningVersion());
+        int ovIndex = timeline.findClosestReleaseBefore(ticket.getOpeningVersion());
         if (ovIndex == -1) return null;
 
-        double p = (validTicketsWithAV.size() >= MIN_VALID_TICKETS) ? computeIncrementalP() : coldStartP;
+        double p;
+        if (Configuration.PROPORTION_FIXED_BEFORE) {
+            Double windowed = computeFixedBeforeP(ticket);
+            p = (windowed != null) ? windowed : ColdStartEstimator.getColdStartP();
+        } else {
+            p = (validTicketsWithAV.size() >= MIN_VALID_TICKETS) ? computeIncrementalP() : ColdStartEstimator.getColdStartP();
+        }
 
         int ivIndex;
         if (fvIndex == ovIndex) {
@@ -99,9 +155,9 @@ public class ProportionEstimator {
         }
 
         ivIndex = Math.max(0, ivIndex);
-        String estIV = mapper.getReleaseName(ivIndex);
+        String estIV = timeline.getReleaseName(ivIndex);
 
-        ticket.setInjectedVersionName(mapper.getReleaseName(ivIndex));
+        ticket.setInjectedVersionName(timeline.getReleaseName(ivIndex));
 
         if (Configuration.LABELING_DEBUG) {
             if (fvIndex == -1) {
@@ -116,33 +172,11 @@ public class ProportionEstimator {
     }
 
     public String normalizeVersionName(String name) {
-        if (name == null) return null;
-        if (name.matches("\\d+\\.\\d+")) {
-            return name + ".0";
-        }
-        return name;
-    }
-
-    private int findClosestReleaseBefore(LocalDate targetDate) {
-        int bestIdx = -1;
-        LocalDate bestDate = null;
-
-        for (int i = 0; i < mapper.size(); i++) {
-            String relName = mapper.getReleaseName(i);
-            Release r = releaseMap.get(relName);
-            if (r == null || r.getReleaseDate().isAfter(targetDate)) continue;
-
-            if (bestDate == null || r.getReleaseDate().isAfter(bestDate)) {
-                bestDate = r.getReleaseDate();
-                bestIdx = i;
-            }
-        }
-
-        return bestIdx;
+        return ReleaseTimeline.normalizeVersionName(name);
     }
 
-    public ReleaseIndexMapper getMapper() {
-        return mapper;
+    public ReleaseTimeline getTimeline() {
+        return timeline;
     }
 
 }
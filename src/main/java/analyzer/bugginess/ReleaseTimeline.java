@@ -0,0 +1,93 @@
+package analyzer.bugginess;
+
+import analyzer.model.Release;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// Vista immutabile delle release di un progetto nell'ordine ricevuto: nome normalizzato e data per indice,
+// nome → indice in O(1) e data → ultima release non successiva in O(log n)
+public final class ReleaseTimeline {
+
+    private static final Pattern MAJOR_MINOR = Pattern.compile("\\d+\\.\\d+");
+
+    private final String[] names;
+    private final Map<String, Integer> indexByName;
+
+    // Release ordinate per data (a parità di data l'indice più basso va per ultimo), per la ricerca binaria
+    private final long[] sortedEpochDays;
+    private final int[] sortedIndexes;
+
+    public ReleaseTimeline(List<Release> orderedReleases) {
+        int n = orderedReleases.size();
+        names = new String[n];
+        indexByName = new HashMap<>(n * 2);
+
+        long[] epochDays = new long[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            Release r = orderedReleases.get(i);
+            names[i] = normalizeVersionName(r.getName());
+            indexByName.put(names[i], i); // nomi ripetuti: vale l'ultima occorrenza
+            epochDays[i] = r.getReleaseDate().toEpochDay();
+            order[i] = i;
+        }
+
+        Arrays.sort(order, (a, b) -> epochDays[a] != epochDays[b]
+                ? Long.compare(epochDays[a], epochDays[b])
+                : Integer.compare(b, a));
+
+        sortedEpochDays = new long[n];
+        sortedIndexes = new int[n];
+        for (int k = 0; k < n; k++) {
+            sortedIndexes[k] = order[k];
+            sortedEpochDays[k] = epochDays[order[k]];
+        }
+    }
+
+    // "1.2" → "1.2.0"; gli altri nomi restano invariati
+    public static String normalizeVersionName(String name) {
+        if (name == null) return null;
+        if (MAJOR_MINOR.matcher(name).matches()) {
+            return name + ".0";
+        }
+        return name;
+    }
+
+    // Indice della release con quel nome (già normalizzato), -1 se assente
+    public int getIndex(String releaseName) {
+        if (releaseName == null) return -1;
+        Integer index = indexByName.get(releaseName);
+        return index == null ? -1 : index;
+    }
+
+    // Nome normalizzato della release, null se l'indice è fuori range
+    public String getReleaseName(int index) {
+        return (index >= 0 && index < names.length) ? names[index] : null;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    // Indice della release più recente con data non successiva a date (a parità di data la prima in ordine), -1 se nessuna
+    public int findClosestReleaseBefore(LocalDate date) {
+        if (date == null) return -1;
+
+        long day = date.toEpochDay();
+        int low = 0;
+        int high = sortedEpochDays.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedEpochDays[mid] <= day) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low == 0 ? -1 : sortedIndexes[low - 1];
+    }
+}
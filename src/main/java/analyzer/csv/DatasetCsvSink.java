@@ -0,0 +1,270 @@
+package analyzer.csv;
+
+import analyzer.model.MethodInfo;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.List;
+
+// Scrittura in streaming del dataset CSV: le righe vengono formattate direttamente in un buffer di byte
+// (interi senza stringhe intermedie) e scaricate sul FileChannel a ogni release.
+// Le etichette dell'ultima colonna possono essere salvate a parte in un file compatto e applicate
+// al CSV già scritto, senza dover tenere in memoria né riformattare i metodi.
+public final class DatasetCsvSink implements AutoCloseable {
+
+    private static final String[] HEADER = {
+            "Project", "Method", "ReleaseID", "LOC", "CyclomaticComplexity", "CognitiveComplexity", "Number of Smells", "ParameterCount", "NestingDepth", "StatementCount",
+            "LocalVariableCount", "ReturnTypeComplexity", "MethodHistories",
+            "StmtAdded", "StmtDeleted", "Churn", "DistinctAuthors", "Bugginess"
+    };
+
+    private static final byte SEPARATOR = ';';
+    private static final byte NEWLINE = '\n';
+    private static final byte[] YES = "Yes".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NO = "No".getBytes(StandardCharsets.US_ASCII);
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // Formato del file delle etichette: versione, numero di righe, bitset delle righe buggy
+    private static final int LABELS_FORMAT_VERSION = 1;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] digits = new byte[11];
+    private long rowCount;
+
+    public DatasetCsvSink(Path outputPath) throws IOException {
+        this.channel = FileChannel.open(outputPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        putString(String.join(";", HEADER));
+        putByte(NEWLINE);
+    }
+
+    // Accoda le righe dei metodi, nell'ordine della lista
+    public void writeRows(List<MethodInfo> methods) throws IOException {
+        for (MethodInfo method : methods) {
+            putString(method.getProjectName());
+            putByte(SEPARATOR);
+            putMethodName(method);
+            putByte(SEPARATOR);
+            putString(method.getReleaseId());
+            putByte(SEPARATOR);
+            putInt(method.getLoc());
+            putInt(method.getCyclomaticComplexity());
+            putInt(method.getCognitiveComplexity());
+            putInt(method.getNumberOfSmells());
+            putInt(method.getParameterCount());
+            putInt(method.getNestingDepth());
+            putInt(method.getStatementCount());
+            putInt(method.getLocalVariableCount());
+            putInt(method.getReturnTypeComplexity());
+            putInt(method.getMethodHistories());
+            putInt(method.getStmtAdded());
+            putInt(method.getStmtDeleted());
+            putInt(method.getChurn());
+            putInt(method.getDistinctAuthors());
+            putBytes(method.isBugginess() ? YES : NO);
+            putByte(NEWLINE);
+        }
+        rowCount += methods.size();
+    }
+
+    // Scarica sul file le righe accumulate (chiamato a fine release)
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Salva l'etichetta di ogni metodo (nell'ordine delle righe del CSV) come bitset
+    public static void writeLabels(Path labelsPath, List<MethodInfo> methods) throws IOException {
+        BitSet buggy = new BitSet(methods.size());
+        for (int i = 0; i < methods.size(); i++) {
+            if (methods.get(i).isBugginess()) buggy.set(i);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(labelsPath)))) {
+            out.writeInt(LABELS_FORMAT_VERSION);
+            out.writeInt(methods.size());
+            byte[] bits = buggy.toByteArray();
+            out.writeInt(bits.length);
+            out.write(bits);
+        }
+    }
+
+    // Riscrive l'ultima colonna del CSV con le etichette del file compatto. Yes/No hanno lunghezze diverse,
+    // quindi la modifica non può avvenire sul posto: il resto di ogni riga viene copiato così com'è su un
+    // file temporaneo che poi sostituisce il CSV.
+    public static void applyLabels(Path csvPath, Path labelsPath) throws IOException {
+        BitSet buggy;
+        int labelCount;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(labelsPath)))) {
+            if (in.readInt() != LABELS_FORMAT_VERSION) {
+                throw new IOException("Formato del file di etichette non supportato: " + labelsPath);
+            }
+            labelCount = in.readInt();
+            byte[] bits = new byte[in.readInt()];
+            in.readFully(bits);
+            buggy = BitSet.valueOf(bits);
+        }
+
+        Path tmp = Files.createTempFile(csvPath.toAbsolutePath().getParent(), csvPath.getFileName().toString(), ".tmp");
+        try (FileChannel source = FileChannel.open(csvPath, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+            ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE + 2 * YES.length);
+            int row = -1;            // -1 = intestazione
+            boolean lastField = false; // dopo l'ultimo ';' della riga corrente: byte da scartare
+            int separators = 0;
+
+            while (source.read(in) != -1) {
+                in.flip();
+                while (in.hasRemaining()) {
+                    byte b = in.get();
+                    if (b == NEWLINE) {
+                        if (row >= 0) {
+                            if (row >= labelCount) {
+                                throw new IOException("Il CSV ha più righe delle etichette: " + csvPath);
+                            }
+                            out.put(buggy.get(row) ? YES : NO);
+                        }
+                        out.put(NEWLINE);
+                        row++;
+                        separators = 0;
+                        lastField = false;
+                    } else if (lastField) {
+                        continue;
+                    } else {
+                        out.put(b);
+                        if (b == SEPARATOR && row >= 0 && ++separators == HEADER.length - 1) {
+                            lastField = true;
+                        }
+                    }
+
+                    if (out.position() >= BUFFER_SIZE) {
+                        drain(out, target);
+                    }
+                }
+                in.clear();
+            }
+            drain(out, target);
+
+            if (row != labelCount) {
+                throw new IOException(String.format("Righe del CSV (%d) diverse dalle etichette (%d): %s", row, labelCount, csvPath));
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        Files.move(tmp, csvPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void drain(ByteBuffer out, FileChannel target) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            target.write(out);
+        }
+        out.clear();
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) flush();
+    }
+
+    private void putByte(byte b) throws IOException {
+        ensureCapacity(1);
+        buffer.put(b);
+    }
+
+    private void putBytes(byte[] bytes) throws IOException {
+        if (bytes.length > BUFFER_SIZE) {
+            flush();
+            ByteBuffer large = ByteBuffer.wrap(bytes);
+            while (large.hasRemaining()) {
+                channel.write(large);
+            }
+            return;
+        }
+        ensureCapacity(bytes.length);
+        buffer.put(bytes);
+    }
+
+    // Nome completo del metodo (path + "/" + nome semplice) scritto a pezzi, senza comporre la stringa
+    private void putMethodName(MethodInfo method) throws IOException {
+        String path = method.getFilePath();
+        if (path != null) {
+            putString(path);
+            putByte((byte) '/');
+        }
+        putString(method.getSimpleName());
+    }
+
+    // Stringhe ASCII copiate carattere per carattere, le altre codificate in UTF-8; null come "null" (come FileWriter.append)
+    private void putString(String s) throws IOException {
+        if (s == null) s = "null";
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(i) >= 0x80) {
+                putBytes(s.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        }
+
+        if (length > BUFFER_SIZE) {
+            putBytes(s.getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buffer.put((byte) s.charAt(i));
+        }
+    }
+
+    // Intero in decimale seguito dal separatore
+    private void putInt(int value) throws IOException {
+        ensureCapacity(digits.length + 1);
+        if (value == Integer.MIN_VALUE) {
+            buffer.put(String.valueOf(value).getBytes(StandardCharsets.US_ASCII));
+            buffer.put(SEPARATOR);
+            return;
+        }
+
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int pos = digits.length;
+        do {
+            digits[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        buffer.put(digits, pos, digits.length - pos);
+        buffer.put(SEPARATOR);
+    }
+}
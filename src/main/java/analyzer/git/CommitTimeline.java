@@ -0,0 +1,77 @@
+package analyzer.git;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Commit raggiungibili da origin/master ordinati per giorno dell'author date, con ricerca binaria sugli intervalli di date.
+// Costruito una volta sola, evita di rileggere l'intero log per ogni interrogazione.
+public final class CommitTimeline {
+
+    private final long[] epochDays;      // giorno dell'author date (fuso di sistema), crescente
+    private final int[] logPositions;    // posizione del commit nel git log, parallela a epochDays
+    private final RevCommit[] commitsInLogOrder;
+
+    CommitTimeline(Iterable<RevCommit> log) {
+        List<RevCommit> all = new ArrayList<>();
+        for (RevCommit commit : log) {
+            all.add(commit);
+        }
+
+        int n = all.size();
+        long[] days = new long[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            days[i] = all.get(i).getAuthorIdent().getWhen().toInstant()
+                    .atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+            order[i] = i;
+        }
+        // Ordinamento stabile: a parità di giorno resta l'ordine del log
+        Arrays.sort(order, (a, b) -> Long.compare(days[a], days[b]));
+
+        epochDays = new long[n];
+        logPositions = new int[n];
+        for (int i = 0; i < n; i++) {
+            epochDays[i] = days[order[i]];
+            logPositions[i] = order[i];
+        }
+        commitsInLogOrder = all.toArray(new RevCommit[0]);
+    }
+
+    // Commit con author date tra from e to (estremi inclusi), nell'ordine del git log
+    public List<RevCommit> between(LocalDate from, LocalDate to) {
+        int low = firstAtOrAfter(from.toEpochDay());
+        int high = firstAtOrAfter(to.toEpochDay() + 1);
+        if (low >= high) return new ArrayList<>();
+
+        int[] positions = Arrays.copyOfRange(logPositions, low, high);
+        Arrays.sort(positions);
+
+        List<RevCommit> result = new ArrayList<>(positions.length);
+        for (int pos : positions) {
+            result.add(commitsInLogOrder[pos]);
+        }
+        return result;
+    }
+
+    public int size() {
+        return commitsInLogOrder.length;
+    }
+
+    private int firstAtOrAfter(long day) {
+        int low = 0;
+        int high = epochDays.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (epochDays[mid] < day) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,158 @@
+package analyzer.git;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+import analyzer.exception.GitOperationException;
+import util.Configuration;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+// Edit list per path dei file .java modificati da un commit rispetto al primo parent.
+// Ogni commit viene diffato una volta sola; il risultato resta in una cache LRU limitata per numero di edit
+// e, se è configurata una directory di spill, le voci espulse finiscono su disco in formato binario compatto.
+public final class DiffService {
+
+    private static final int SPILL_FORMAT_VERSION = 1;
+
+    private final Repository repo;
+    private final Path spillDir; // null = nessuno spill su disco
+    private final LruCache<ObjectId, Map<String, List<Edit>>> cache;
+
+    public DiffService(Repository repo, long maxEdits, Path spillDir) {
+        this.repo = repo;
+        this.spillDir = spillDir;
+        this.cache = new LruCache<>("Cache diff", maxEdits, DiffService::weigh,
+                spillDir == null ? null : this::spill);
+    }
+
+    // Mappa path nuovo → edit list, nell'ordine del diff; vuota per il root commit
+    public Map<String, List<Edit>> getEdits(RevCommit commit) throws GitOperationException {
+        if (commit.getParentCount() == 0) return Collections.emptyMap(); // Salta root commit
+
+        ObjectId id = commit.toObjectId();
+        Map<String, List<Edit>> edits = cache.get(id);
+        if (edits != null) return edits;
+
+        edits = spillDir == null ? null : readSpilled(id);
+        if (edits == null) {
+            edits = computeEdits(commit);
+        }
+
+        cache.put(id, edits);
+        return edits;
+    }
+
+    @Override
+    public String toString() {
+        return cache.toString();
+    }
+
+    private Map<String, List<Edit>> computeEdits(RevCommit commit) throws GitOperationException {
+        Map<String, List<Edit>> editsByPath = new LinkedHashMap<>();
+
+        try (DiffFormatter df = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+            RevCommit parent = repo.parseCommit(commit.getParent(0));
+
+            df.setRepository(repo);
+            df.setDiffComparator(RawTextComparator.DEFAULT);
+            df.setDetectRenames(true);
+
+            for (DiffEntry diff : df.scan(parent.getTree(), commit.getTree())) {
+                String path = diff.getNewPath();
+                if (diff.getChangeType() == DiffEntry.ChangeType.DELETE || !path.endsWith(".java")) continue;
+
+                editsByPath.put(path, Collections.unmodifiableList(df.toFileHeader(diff).toEditList()));
+            }
+
+        } catch (Exception e) {
+            throw new GitOperationException("Errore nel diff del commit " + commit.getName(), e);
+        }
+
+        return Collections.unmodifiableMap(editsByPath);
+    }
+
+    private static long weigh(Map<String, List<Edit>> edits) {
+        long weight = 1;
+        for (List<Edit> list : edits.values()) {
+            weight += 1 + list.size();
+        }
+        return weight;
+    }
+
+    // Formato: versione, numero di path, poi per ogni path il nome e le edit come 4 interi (beginA, endA, beginB, endB)
+    private void spill(ObjectId id, Map<String, List<Edit>> edits) {
+        Path entry = spillDir.resolve(id.getName());
+        if (Files.exists(entry)) return;
+
+        try {
+            Files.createDirectories(spillDir);
+            Path tmp = Files.createTempFile(spillDir, id.getName(), ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(SPILL_FORMAT_VERSION);
+                out.writeInt(edits.size());
+                for (Map.Entry<String, List<Edit>> e : edits.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeInt(e.getValue().size());
+                    for (Edit edit : e.getValue()) {
+                        out.writeInt(edit.getBeginA());
+                        out.writeInt(edit.getEndA());
+                        out.writeInt(edit.getBeginB());
+                        out.writeInt(edit.getEndB());
+                    }
+                }
+            }
+
+            Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (IOException e) {
+            Configuration.logger.log(Level.WARNING, String.format("Impossibile scrivere lo spill del diff: %s", entry), e);
+        }
+    }
+
+    private Map<String, List<Edit>> readSpilled(ObjectId id) {
+        Path entry = spillDir.resolve(id.getName());
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            if (in.readInt() != SPILL_FORMAT_VERSION) return null;
+
+            int pathCount = in.readInt();
+            Map<String, List<Edit>> editsByPath = new LinkedHashMap<>();
+            for (int i = 0; i < pathCount; i++) {
+                String path = in.readUTF();
+                int editCount = in.readInt();
+                List<Edit> edits = new ArrayList<>(editCount);
+                for (int j = 0; j < editCount; j++) {
+                    edits.add(new Edit(in.readInt(), in.readInt(), in.readInt(), in.readInt()));
+                }
+                editsByPath.put(path, Collections.unmodifiableList(edits));
+            }
+            return Collections.unmodifiableMap(editsByPath);
+
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            Configuration.logger.log(Level.WARNING, String.format("Spill del diff illeggibile: %s", entry), e);
+            return null;
+        }
+    }
+}
@@ -2,81 +2,109 @@ package analyzer.git;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 import analyzer.exception.GitOperationException;
 import analyzer.model.TicketInfo;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.AndRevFilter;
 import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
 import util.Configuration;
-import org.eclipse.jgit.revwalk.filter.MessageRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.eclipse.jgit.util.io.DisabledOutputStream;
 
 public final class GitRepository {
     private final Repository repo;
     private final Git git;
+    private final String localPath;
+    private CommitTimeline timeline;
+    private ObjectId logStart;
+
+    // Cache per commit condivise da linking, labeling e storico
+    private final LruCache<ObjectId, Set<String>> touchedFilesCache =
+            new LruCache<>("Cache file toccati", Configuration.TOUCHED_FILES_CACHE_MAX_PATHS, files -> files.size() + 1L);
+    private final DiffService diffService;
+
+    // RevWalk di lunga durata per risolvere hash e parent senza creare un LogCommand per ogni lookup.
+    // RevWalk non è thread-safe: una per thread, così i worker del labeling non si serializzano su un lock.
+    // Dopo close() le walk sono chiuse e rimosse e non ne vengono più create.
+    private final Map<Thread, RevWalk> lookupWalks = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+    // Commit risolti per hash; Optional vuoto = hash non risolvibile
+    private final LruCache<String, Optional<RevCommit>> resolvedCommits =
+            new LruCache<>("Cache commit risolti", Configuration.RESOLVED_COMMIT_CACHE_MAX_ENTRIES, commit -> 1L);
+    private final LruCache<String, String> authorCache =
+            new LruCache<>("Cache autori", Configuration.COMMIT_AUTHOR_CACHE_MAX_ENTRIES, author -> 1L);
 
     public GitRepository(String localPath) throws IOException {
+        this.localPath = localPath;
         File localPathDir = new File(localPath);
         git = Git.open(localPathDir); // apre un repository git già clonato in locale
         repo = git.getRepository(); // usa JGit per collegarsi a quel repository
+        diffService = new DiffService(repo, Configuration.DIFF_CACHE_MAX_EDITS,
+                Configuration.SPILL_DIFF_CACHE ? Paths.get(Configuration.DIFF_SPILL_DIR) : null);
     }
 
     public Git getGit() {
         return this.git;
     }
 
+    // Commit con author date in [from, to], nell'ordine del log; risposte dalla timeline indicizzata
     public List<RevCommit> getCommitsBetweenDates(LocalDate from, LocalDate to) throws GitOperationException {
-        try {
-            Iterable<RevCommit> allCommits = this.getGit().log().call();
-            List<RevCommit> filtered = new ArrayList<>();
-            for (RevCommit commit : allCommits) {
-                LocalDate date = commit.getAuthorIdent().getWhen().toInstant()
-                        .atZone(ZoneId.systemDefault()).toLocalDate();
-                if (!date.isBefore(from) && !date.isAfter(to)) {
-                    filtered.add(commit);
-                }
+        return getCommitTimeline().between(from, to);
+    }
+
+    // Timeline costruita alla prima richiesta con una sola lettura del log
+    public synchronized CommitTimeline getCommitTimeline() throws GitOperationException {
+        if (timeline == null) {
+            try {
+                timeline = new CommitTimeline(git.log().add(logStart()).call());
+            } catch (Exception e) {
+                throw new GitOperationException("Errore durante la costruzione della timeline dei commit.", e);
             }
-            return filtered;
-        } catch (Exception e) {
-            throw new GitOperationException("Errore durante il filtraggio dei commit per intervallo di date.", e);
-        }
 
+            if (Configuration.BASIC_DEBUG && Configuration.logger.isLoggable(Level.INFO)) {
+                Configuration.logger.info(String.format("Timeline dei commit costruita: %d commit", timeline.size()));
+            }
+        }
+        return timeline;
     }
 
     public boolean isAuthorInTicket(RevCommit commit, TicketInfo ticket) {
         String author = commit.getAuthorIdent().getName();
         for (String commitId : ticket.getCommitIds()) {
-            try {
-                RevCommit linked = this.getGit().log()
-                        .add(this.getGit().getRepository().resolve(commitId))
-                        .call().iterator().next();
-                if (linked.getAuthorIdent().getName().equals(author)) {
-                    return true;
-                }
-            } catch (Exception e) {
-                // Ignora errori singoli
+            if (author.equals(getCommitAuthor(commitId))) {
+                return true;
             }
         }
         return false;
     }
 
-    public Iterable<RevCommit> getCommitsByMessageContaining(String keyword) throws GitOperationException {
+    // Tutti i commit raggiungibili da origin/master, dal più recente
+    public Iterable<RevCommit> getAllCommits() throws GitOperationException {
         try {
-            return git.log()
-                    .setRevFilter(MessageRevFilter.create(keyword))
-                    .call();
+            return git.log().add(logStart()).call();
         } catch (Exception e) {
-            throw new GitOperationException("Errore durante il recupero dei commit con messaggi contenenti '" + keyword + "'", e);
+            throw new GitOperationException("Errore durante la lettura del log dei commit.", e);
         }
     }
 
@@ -88,11 +116,7 @@ public final class GitRepository {
 
         try (RevWalk walk = new RevWalk(repo)) {
             // Forza l'inizio da origin/master per evitare problemi di branch locali
-            Ref master = repo.findRef("refs/remotes/origin/master");
-            if (master == null) {
-                throw new IOException("Impossibile trovare origin/master");
-            }
-            walk.markStart(walk.parseCommit(master.getObjectId()));
+            walk.markStart(walk.parseCommit(logStart()));
             walk.sort(RevSort.COMMIT_TIME_DESC); // Dal più recente al più vecchio
 
             for (RevCommit commit : walk) {
@@ -106,38 +130,182 @@ public final class GitRepository {
         return null; // Nessun commit trovato prima della release
     }
 
+    // Punto di partenza di tutte le letture del log: origin/master, non HEAD, che con il checkout delle release
+    // si sposta sull'ultima release analizzata. Così linking e labeling vedono la stessa storia in entrambe le modalità.
+    private synchronized ObjectId logStart() throws IOException {
+        if (logStart == null) {
+            Ref master = repo.findRef("refs/remotes/origin/master");
+            if (master == null) {
+                throw new IOException("Impossibile trovare origin/master");
+            }
+            logStart = master.getObjectId();
+        }
+        return logStart;
+    }
+
     // Esegue il checkout al commit indicato
     public void checkoutCommit(RevCommit commit) throws GitAPIException {
         if (Configuration.BASIC_DEBUG) Configuration.logger.info("Eseguo checkout al commit: " + commit.getName());
         git.checkout().setName(commit.getName()).call();
     }
 
-    // Chiude la connessione con il repository
+    // Elenca i file .java dello snapshot leggendo direttamente il tree del commit, senza toccare il working tree
+    public List<SourceFile> listJavaSources(RevCommit commit) throws GitOperationException {
+        List<SourceFile> sources = new ArrayList<>();
+
+        try (TreeWalk walk = new TreeWalk(repo)) {
+            walk.addTree(commit.getTree());
+            walk.setRecursive(true);
+            walk.setFilter(PathSuffixFilter.create(".java"));
+
+            while (walk.next()) {
+                FileMode mode = walk.getFileMode(0);
+                if (mode != FileMode.REGULAR_FILE && mode != FileMode.EXECUTABLE_FILE) continue;
+
+                // Stesso path che produrrebbe Files.walk sul checkout
+                String path = Paths.get(localPath).resolve(walk.getPathString()).toString();
+                if (SourceFile.isAnalyzable(path)) {
+                    sources.add(new SourceFile(path, walk.getObjectId(0)));
+                }
+            }
+        } catch (IOException e) {
+            throw new GitOperationException("Errore nella lettura del tree del commit " + commit.getName(), e);
+        }
+
+        return sources;
+    }
+
+    // Legge il contenuto di un blob dall'object database
+    public String readBlob(ObjectId blobId) throws IOException {
+        byte[] content = repo.open(blobId, Constants.OBJ_BLOB).getCachedBytes(Integer.MAX_VALUE);
+        return new String(content, StandardCharsets.UTF_8);
+    }
+
+    // Chiude la connessione con il repository; definitiva: i lookup successivi falliscono
     public void close() {
+        synchronized (lookupWalks) {
+            closed = true;
+            lookupWalks.values().forEach(RevWalk::close);
+            lookupWalks.clear();
+        }
         git.close();
     }
 
-    public Iterable<RevCommit> getCommitsTouchingFileBefore(String filePath, LocalDate releaseDate) throws GitOperationException {
+    // Commit dato l'hash, letto con la RevWalk del thread e memorizzato; null se l'hash non è risolvibile
+    public RevCommit resolveCommit(String commitHash) {
+        Optional<RevCommit> cached = resolvedCommits.get(commitHash);
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+
+        RevCommit commit = null;
+        try {
+            ObjectId id = repo.resolve(commitHash);
+            if (id != null) {
+                commit = lookupWalk().parseCommit(id);
+            }
+        } catch (IOException e) {
+            Configuration.logger.log(Level.WARNING, String.format("Commit non risolvibile: %s", commitHash), e);
+        }
+
+        resolvedCommits.put(commitHash, Optional.ofNullable(commit));
+        return commit;
+    }
+
+    // Risoluzione in blocco (es. tutti i commit dei ticket prima del labeling): riempie la cache dei commit risolti
+    public void resolveCommits(Collection<String> commitHashes) {
+        for (String hash : commitHashes) {
+            resolveCommit(hash);
+        }
+    }
+
+    // RevWalk del thread corrente, creata al primo uso; IllegalStateException se il repository è chiuso
+    private RevWalk lookupWalk() {
+        RevWalk walk = lookupWalks.get(Thread.currentThread());
+        if (walk != null && !closed) return walk;
+
+        synchronized (lookupWalks) {
+            if (closed) {
+                throw new IllegalStateException("Repository Git già chiuso: " + localPath);
+            }
+            return lookupWalks.computeIfAbsent(Thread.currentThread(), t -> new RevWalk(repo));
+        }
+    }
+
+    // Commit raggiungibili da origin/master nella finestra (since, until]; since null = dall'inizio della storia
+    public Iterable<RevCommit> getCommitsInWindow(LocalDate since, LocalDate until) throws GitOperationException {
         try {
+            RevFilter upTo = CommitTimeRevFilter.before(java.sql.Date.valueOf(until));
+            if (since == null) {
+                return git.log().add(logStart()).setRevFilter(upTo).call();
+            }
+
+            // Esclusi i commit già contati nella release precedente (commit time <= since)
+            long sinceSeconds = java.sql.Date.valueOf(since).getTime() / 1000;
             return git.log()
-                    .addPath(filePath)
-                    .setRevFilter(CommitTimeRevFilter.before(java.sql.Date.valueOf(releaseDate)))
+                    .add(logStart())
+                    .setRevFilter(AndRevFilter.create(committedAfter(sinceSeconds), upTo))
                     .call();
         } catch (Exception e) {
-            throw new GitOperationException("Errore nel recupero dei commit che toccano il file prima della release: " + filePath, e);
+            throw new GitOperationException("Errore nel recupero dei commit tra " + since + " e " + until, e);
+        }
+    }
+
+    // Commit con commit time successivo a sinceSeconds. A differenza di CommitTimeRevFilter.after non ferma la walk
+    // al primo commit più vecchio: con orologi sfasati i commit della finestra dopo di lui andrebbero persi
+    private static RevFilter committedAfter(long sinceSeconds) {
+        return new RevFilter() {
+            @Override
+            public boolean include(RevWalk walker, RevCommit commit) {
+                return commit.getCommitTime() > sinceSeconds;
+            }
+
+            @Override
+            public RevFilter clone() {
+                return this;
+            }
+
+            @Override
+            public boolean requiresCommitBody() {
+                return false;
+            }
+        };
+    }
+
+    // Edit list di tutti i file .java modificati dal commit rispetto al primo parent, per path nuovo.
+    // Il diff è calcolato una volta per commit dal DiffService e condiviso da storico e labeling.
+    public Map<String, List<Edit>> getJavaEditsByPath(RevCommit commit) throws GitOperationException {
+        Map<String, List<Edit>> editsByPath = diffService.getEdits(commit);
+
+        // Lo stesso diff dà anche i file toccati: il labeling successivo li troverà già in cache
+        if (commit.getParentCount() > 0) {
+            Set<String> touchedFiles = new HashSet<>();
+            for (String path : editsByPath.keySet()) {
+                if (isTrackedJavaPath(path)) touchedFiles.add(path);
+            }
+            cacheTouchedFiles(commit, touchedFiles);
         }
+        return editsByPath;
     }
 
+    public DiffService getDiffService() {
+        return diffService;
+    }
 
-    public RevCommit parseCommit(RevCommit commit) throws IOException {
-        return repo.parseCommit(commit.getParent(0));
+    // Primo parent del commit, parsato con la RevWalk del thread
+    public RevCommit parseFirstParent(RevCommit commit) throws IOException {
+        return lookupWalk().parseCommit(commit.getParent(0));
     }
 
+    // File .java (esclusi test e target) toccati dal commit; il diff viene calcolato una volta e poi letto dalla cache
     public Set<String> getTouchedJavaFiles(RevCommit commit) throws GitOperationException, IOException {
-        Set<String> javaFiles = new HashSet<>();
-        if (commit.getParentCount() == 0) return javaFiles; // Salta root commit
+        if (commit.getParentCount() == 0) return Collections.emptySet(); // Salta root commit
 
-        RevCommit parent = parseCommit(commit);
+        Set<String> cached = touchedFilesCache.get(commit.toObjectId());
+        if (cached != null) return cached;
+
+        Set<String> javaFiles = new HashSet<>();
+        RevCommit parent = parseFirstParent(commit);
 
         try (DiffFormatter df = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
             df.setRepository(repo);
@@ -146,7 +314,7 @@ public final class GitRepository {
 
             for (DiffEntry diff : diffs) {
                 String path = diff.getNewPath();
-                if (path.endsWith(".java") && !path.contains("/test/") && !path.contains("/target/")) {
+                if (isTrackedJavaPath(path)) {
                     javaFiles.add(path);
                 }
             }
@@ -155,9 +323,40 @@ public final class GitRepository {
             throw new GitOperationException("Errore nel calcolo dei file .java toccati dal commit " + commit.getName(), e);
         }
 
-        return javaFiles;
+        return cacheTouchedFiles(commit, javaFiles);
     }
 
+    // Autore di un commit dato l'hash; null se il commit non è risolvibile
+    public String getCommitAuthor(String commitId) {
+        String author = authorCache.get(commitId);
+        if (author != null) return author;
+
+        RevCommit commit = resolveCommit(commitId);
+        if (commit == null) return null;
+
+        author = commit.getAuthorIdent().getName();
+        authorCache.put(commitId, author);
+        return author;
+    }
+
+    public void logCacheStats() {
+        if (Configuration.BASIC_DEBUG && Configuration.logger.isLoggable(Level.INFO)) {
+            Configuration.logger.info(touchedFilesCache.toString());
+            Configuration.logger.info(authorCache.toString());
+            Configuration.logger.info(resolvedCommits.toString());
+            Configuration.logger.info(diffService.toString());
+        }
+    }
+
+    private Set<String> cacheTouchedFiles(RevCommit commit, Set<String> javaFiles) {
+        Set<String> unmodifiable = Collections.unmodifiableSet(javaFiles);
+        touchedFilesCache.put(commit.toObjectId(), unmodifiable);
+        return unmodifiable;
+    }
+
+    private static boolean isTrackedJavaPath(String path) {
+        return path.endsWith(".java") && !path.contains("/test/") && !path.contains("/target/");
+    }
 
 }
 
@@ -0,0 +1,87 @@
+package analyzer.git;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+
+// Cache LRU limitata per peso (es. numero di path memorizzati), thread-safe, con contatori di hit/miss
+public final class LruCache<K, V> {
+
+    private final String name;
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final BiConsumer<K, V> evictionListener; // può essere null
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true); // ordine di accesso
+
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public LruCache(String name, long maxWeight, ToLongFunction<V> weigher) {
+        this(name, maxWeight, weigher, null);
+    }
+
+    public LruCache(String name, long maxWeight, ToLongFunction<V> weigher, BiConsumer<K, V> evictionListener) {
+        this.name = name;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.evictionListener = evictionListener;
+    }
+
+    // Valore in cache o null; aggiorna i contatori
+    public synchronized V get(K key) {
+        V value = entries.get(key);
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    // Inserisce il valore ed espelle le voci usate meno di recente finché il peso torna sotto il limite.
+    // Il listener viene chiamato fuori dal lock, così può fare I/O senza bloccare gli altri thread.
+    public void put(K key, V value) {
+        List<Map.Entry<K, V>> evicted = insert(key, value);
+        if (evictionListener != null) {
+            for (Map.Entry<K, V> e : evicted) {
+                evictionListener.accept(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    private synchronized List<Map.Entry<K, V>> insert(K key, V value) {
+        V previous = entries.put(key, value);
+        if (previous != null) {
+            weight -= weigher.applyAsLong(previous);
+        }
+        weight += weigher.applyAsLong(value);
+
+        List<Map.Entry<K, V>> evicted = new ArrayList<>();
+        Iterator<Map.Entry<K, V>> it = entries.entrySet().iterator();
+        while (weight > maxWeight && it.hasNext()) {
+            Map.Entry<K, V> eldest = it.next();
+            if (eldest.getKey().equals(key)) continue; // la voce appena inserita resta anche se da sola supera il limite
+            weight -= weigher.applyAsLong(eldest.getValue());
+            evicted.add(Map.entry(eldest.getKey(), eldest.getValue()));
+            it.remove();
+            evictions++;
+        }
+        return evicted;
+    }
+
+    public synchronized long getHits() { return hits; }
+
+    public synchronized long getMisses() { return misses; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s: %d voci (peso %d/%d), %d hit, %d miss, %d espulse",
+                name, entries.size(), weight, maxWeight, hits, misses, evictions);
+    }
+}
@@ -0,0 +1,31 @@
+package analyzer.git;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+public final class SourceFile {
+
+    // Stessi filtri usati sul working tree: niente test, build e sorgenti generati
+    private static final String[] EXCLUDED_DIRS = {"/target/", "/test/", "/generated/", "/build/"};
+
+    private final String path;
+    private final ObjectId blobId;
+
+    public SourceFile(String path, ObjectId blobId) {
+        this.path = path;
+        this.blobId = blobId;
+    }
+
+    // Path assoluto del file, usato per costruire il nome dei metodi
+    public String getPath() { return path; }
+
+    // Blob del file nel repository, null se il file va letto dal working tree
+    public ObjectId getBlobId() { return blobId; }
+
+    public static boolean isAnalyzable(String path) {
+        if (!path.endsWith(".java")) return false;
+        for (String dir : EXCLUDED_DIRS) {
+            if (path.contains(dir)) return false;
+        }
+        return true;
+    }
+}
@@ -1,13 +1,11 @@
 package analyzer.jira;
 
 import analyzer.csv.CsvDebugWriter;
+import analyzer.exception.JsonDownloadException;
 import analyzer.model.Release;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import java.io.*;
-import java.net.URL;
-import java.nio.charset.Charset;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -28,16 +26,15 @@ public class GetReleaseInfo {
     }
 
     // Ottiene la lista di release (primo 33%) dal progetto JIRA
-    public static List<Release> getDatasetReleases() throws IOException, JSONException {
+    public static List<Release> getDatasetReleases() throws JsonDownloadException, JSONException {
         releases.clear();
         releaseNames.clear();
         releaseIDs.clear();
 
         if (Configuration.BASIC_DEBUG) Configuration.logger.info("Recupero release da JIRA per il progetto " + Configuration.getProjectName());
 
-        // 1. Richiesta HTTP
-        String url = "https://issues.apache.org/jira/rest/api/2/project/" + Configuration.getProjectName();
-        JSONObject json = readJsonFromUrl(url);
+        // 1. Risposta JIRA (dallo snapshot locale o via HTTP)
+        JSONObject json = TicketParser.toJson(JiraSnapshotStore.getDefault().getProject(Configuration.getProjectName()));
         JSONArray versions = json.getJSONArray("versions");
 
         for (int i = 0; i < versions.length(); i++) {
@@ -103,7 +100,7 @@ public class GetReleaseInfo {
         return output;
     }
 
-    public static List<Release> getAllReleases() throws IOException, JSONException {
+    public static List<Release> getAllReleases() throws JsonDownloadException, JSONException {
         releases.clear();
         releaseNames.clear();
         releaseIDs.clear();
@@ -111,9 +108,8 @@ public class GetReleaseInfo {
         if (Configuration.LABELING_DEBUG)
             Configuration.logger.info("Recupero TUTTE le release da JIRA per il progetto " + Configuration.getProjectName());
 
-        // 1. Richiesta HTTP
-        String url = "https://issues.apache.org/jira/rest/api/2/project/" + Configuration.getProjectName();
-        JSONObject json = readJsonFromUrl(url);
+        // 1. Risposta JIRA (dallo snapshot locale o via HTTP)
+        JSONObject json = TicketParser.toJson(JiraSnapshotStore.getDefault().getProject(Configuration.getProjectName()));
         JSONArray versions = json.getJSONArray("versions");
         
         for (int i = 0; i < versions.length(); i++) {
@@ -156,18 +152,5 @@ public class GetReleaseInfo {
         releaseIDs.put(dateTime, id);
     }
 
-    // Effettua richiesta HTTP e converte in JSONObject
-    private static JSONObject readJsonFromUrl(String url) throws IOException, JSONException {
-        InputStream is = new URL(url).openStream();
-        try (BufferedReader rd = new BufferedReader(new InputStreamReader(is, Charset.forName("UTF-8")))) {
-            StringBuilder sb = new StringBuilder();
-            int cp;
-            while ((cp = rd.read()) != -1) {
-                sb.append((char) cp);
-            }
-            return new JSONObject(sb.toString());
-        }
-    }
-
 }
 
@@ -0,0 +1,190 @@
+package analyzer.jira;
+
+import analyzer.exception.JsonDownloadException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import util.Configuration;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+
+// Client HTTP per l'API REST di JIRA. Scarica la prima pagina di una ricerca e, noti total e maxResults
+// effettivi, le pagine restanti in parallelo; ogni richiesta è ritentata con backoff esponenziale su errori
+// di rete, 429 e 5xx. Le risposte sono restituite come byte grezzi.
+// Le richieste in corso sono al più parallelPages per client, anche quando più thread (es. i progetti del
+// cold start) usano lo stesso client insieme.
+public final class JiraClient {
+
+    // Solo i campi letti da TicketParser
+    public static final String TICKET_FIELDS = "created,fixVersions,versions,issuetype,status,resolution";
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final long INITIAL_BACKOFF_MS = 1000;
+
+    private final String baseUrl;
+    private final int parallelPages;
+    private final int maxAttempts;
+    private final HttpClient http;
+    private final Semaphore requests;
+
+    public JiraClient(String baseUrl, int parallelPages, int maxAttempts) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.parallelPages = Math.max(1, parallelPages);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.requests = new Semaphore(this.parallelPages);
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(30))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    public static JiraClient fromConfiguration() {
+        return new JiraClient(Configuration.JIRA_BASE_URL, Configuration.JIRA_FETCH_THREADS, Configuration.JIRA_MAX_ATTEMPTS);
+    }
+
+    // Risposta di /project/<KEY>
+    public byte[] getProject(String projectKey) throws JsonDownloadException {
+        return get(baseUrl + "/project/" + projectKey);
+    }
+
+    // Tutte le pagine della ricerca, nell'ordine di startAt
+    public List<byte[]> search(String jql, String fields, int pageSize) throws JsonDownloadException {
+        String query = String.format("%s/search?jql=%s&fields=%s&maxResults=%d",
+                baseUrl, URLEncoder.encode(jql, StandardCharsets.UTF_8), fields, pageSize);
+
+        byte[] first = get(query + "&startAt=0");
+        int[] header = readPageHeader(first, query);
+        int total = header[0];
+        int step = header[1] > 0 ? header[1] : pageSize; // il server può ridurre maxResults
+
+        List<byte[]> pages = new ArrayList<>();
+        pages.add(first);
+        if (total <= step) return pages;
+
+        List<String> urls = new ArrayList<>();
+        for (int startAt = step; startAt < total; startAt += step) {
+            urls.add(query + "&startAt=" + startAt);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelPages, urls.size()));
+        try {
+            List<Future<byte[]>> futures = new ArrayList<>(urls.size());
+            for (String url : urls) {
+                futures.add(pool.submit(() -> get(url)));
+            }
+            for (Future<byte[]> future : futures) {
+                pages.add(future.get());
+            }
+            return pages;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JsonDownloadException("Download delle pagine JIRA interrotto: " + query, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof JsonDownloadException cause) throw cause;
+            throw new JsonDownloadException("Errore nel download delle pagine JIRA: " + query, e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private byte[] get(String url) throws JsonDownloadException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMinutes(2))
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+
+        long backoff = INITIAL_BACKOFF_MS;
+        for (int attempt = 1; ; attempt++) {
+            String failure;
+            Exception cause = null;
+            try {
+                HttpResponse<byte[]> response = send(request);
+                int status = response.statusCode();
+                if (status == 200) return response.body();
+
+                failure = "HTTP " + status;
+                if (status != 429 && status < 500) {
+                    throw new JsonDownloadException("Risposta " + failure + " da URL: " + url, null);
+                }
+            } catch (IOException e) {
+                failure = e.toString();
+                cause = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JsonDownloadException("Download interrotto: " + url, e);
+            }
+
+            if (attempt >= maxAttempts) {
+                throw new JsonDownloadException("Errore nel download del JSON da URL (" + failure + "): " + url, cause);
+            }
+
+            if (Configuration.logger.isLoggable(Level.WARNING)) {
+                Configuration.logger.warning(String.format("Tentativo %d/%d fallito (%s), riprovo tra %d ms: %s",
+                        attempt, maxAttempts, failure, backoff, url));
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JsonDownloadException("Download interrotto: " + url, e);
+            }
+            backoff *= 2;
+        }
+    }
+
+    // Il permesso è tenuto solo durante la richiesta, non durante il backoff
+    private HttpResponse<byte[]> send(HttpRequest request) throws IOException, InterruptedException {
+        requests.acquire();
+        try {
+            return http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } finally {
+            requests.release();
+        }
+    }
+
+    // total e maxResults della pagina, letti in streaming saltando l'array degli issue (-1 se assenti)
+    static int[] readPageHeader(byte[] page, String source) throws JsonDownloadException {
+        int total = -1;
+        int maxResults = -1;
+
+        try (JsonParser parser = JSON.createParser(page)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonDownloadException("Risposta JIRA non valida: " + source, null);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("total".equals(field)) {
+                    total = parser.getIntValue();
+                } else if ("maxResults".equals(field)) {
+                    maxResults = parser.getIntValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new JsonDownloadException("Risposta JIRA illeggibile: " + source, e);
+        }
+
+        if (total < 0) {
+            throw new JsonDownloadException("Risposta JIRA senza total: " + source, null);
+        }
+        return new int[] {total, maxResults};
+    }
+}
@@ -0,0 +1,233 @@
+package analyzer.jira;
+
+import analyzer.exception.JsonDownloadException;
+import util.Configuration;
+import util.JiraSnapshotMode;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Snapshot locale delle risposte JIRA grezze (gzip), una directory per progetto:
+//   snapshot.properties          istanti di download e numero di pagine per generazione
+//   project.json.gz              risposta di /project/<KEY> (versioni)
+//   search-<gen>-<page>.json.gz  pagine della ricerca dei bug chiusi; gen 0 = download completo,
+//                                gen successive = ticket del progetto aggiornati dopo il download precedente,
+//                                senza filtro su tipo/stato/risoluzione (TicketParser scarta quelli che non
+//                                sono più bug chiusi, così i ticket riaperti non restano nello snapshot)
+// In modalità REFRESH ogni progetto viene aggiornato al più una volta per istanza dello store.
+// I file vengono scritti su temporaneo + rename e il manifest per ultimo, così una run interrotta
+// non lascia uno snapshot parziale.
+public final class JiraSnapshotStore {
+
+    private static final String PROJECT_JQL = "project=%s";
+    private static final String BUG_FILTER = " AND issuetype=Bug AND status in (Resolved, Closed) AND resolution=Fixed";
+    private static final int PAGE_SIZE = 1000;
+
+    private static final String MANIFEST = "snapshot.properties";
+    private static final String PROJECT_FILE = "project.json.gz";
+    private static final String PROJECT_FETCHED_AT = "project.fetched_at";
+    private static final String SEARCH_GENERATIONS = "search.generations";
+
+    private static JiraSnapshotStore defaultStore;
+
+    private final Path root;
+    private final JiraSnapshotMode mode;
+    private final JiraClient client;
+    private final Map<String, Object> projectLocks = new ConcurrentHashMap<>();
+    // Progetti già aggiornati da questa istanza in modalità REFRESH (versioni / ricerca)
+    private final Set<String> refreshedProjects = ConcurrentHashMap.newKeySet();
+    private final Set<String> refreshedSearches = ConcurrentHashMap.newKeySet();
+
+    public JiraSnapshotStore(Path root, JiraSnapshotMode mode, JiraClient client) {
+        this.root = root;
+        this.mode = mode;
+        this.client = client;
+    }
+
+    // Store configurato in config.properties, condiviso da tutti i client JIRA
+    public static synchronized JiraSnapshotStore getDefault() {
+        if (defaultStore == null) {
+            defaultStore = new JiraSnapshotStore(Paths.get(Configuration.JIRA_SNAPSHOT_DIR), Configuration.JIRA_SNAPSHOT_MODE,
+                    JiraClient.fromConfiguration());
+        }
+        return defaultStore;
+    }
+
+    // JSON grezzo del progetto (contiene l'elenco delle versioni)
+    public byte[] getProject(String projectKey) throws JsonDownloadException {
+        if (mode == JiraSnapshotMode.LIVE) return client.getProject(projectKey);
+
+        synchronized (lockFor(projectKey)) {
+            Path dir = root.resolve(projectKey);
+            Path file = dir.resolve(PROJECT_FILE);
+
+            boolean refresh = mode == JiraSnapshotMode.REFRESH && !refreshedProjects.contains(projectKey);
+            if (!refresh && Files.exists(file)) {
+                return readGzip(file);
+            }
+            if (mode == JiraSnapshotMode.OFFLINE) {
+                throw new JsonDownloadException("Snapshot JIRA assente per il progetto " + projectKey, null);
+            }
+
+            Instant fetchedAt = Instant.now();
+            byte[] body = client.getProject(projectKey);
+            writeGzip(file, body);
+
+            Properties manifest = readManifest(dir);
+            manifest.setProperty(PROJECT_FETCHED_AT, fetchedAt.toString());
+            writeManifest(dir, manifest);
+            refreshedProjects.add(projectKey);
+            return body;
+        }
+    }
+
+    // Pagine grezze della ricerca dei bug chiusi, nell'ordine in cui vanno applicate:
+    // un ticket presente in una pagina successiva sostituisce quello omonimo delle precedenti
+    // (o lo rimuove, se non è più un bug chiuso)
+    public List<byte[]> getBugSearchPages(String projectKey) throws JsonDownloadException {
+        String projectJql = String.format(PROJECT_JQL, projectKey);
+        String jql = projectJql + BUG_FILTER;
+        if (mode == JiraSnapshotMode.LIVE) return client.search(jql, JiraClient.TICKET_FIELDS, PAGE_SIZE);
+
+        synchronized (lockFor(projectKey)) {
+            Path dir = root.resolve(projectKey);
+            Properties manifest = readManifest(dir);
+            int generations = Integer.parseInt(manifest.getProperty(SEARCH_GENERATIONS, "0"));
+
+            if (generations == 0 && mode == JiraSnapshotMode.OFFLINE) {
+                throw new JsonDownloadException("Snapshot JIRA assente per il progetto " + projectKey, null);
+            }
+
+            boolean refresh = mode == JiraSnapshotMode.REFRESH && !refreshedSearches.contains(projectKey);
+            if (generations == 0 || refresh) {
+                String generationJql = jql;
+                if (generations > 0) {
+                    // Un giorno di margine sul fuso del server: i ticket ripresi due volte vengono comunque sovrascritti.
+                    // Niente filtro sui bug chiusi: servono anche i ticket riaperti, da togliere dallo snapshot
+                    Instant last = Instant.parse(manifest.getProperty(generationKey(generations - 1, "fetched_at")));
+                    LocalDate since = last.atZone(ZoneOffset.UTC).toLocalDate().minusDays(1);
+                    generationJql = projectJql + " AND updated >= \"" + since + "\"";
+                }
+
+                Instant fetchedAt = Instant.now();
+                List<byte[]> pages = client.search(generationJql, JiraClient.TICKET_FIELDS, PAGE_SIZE);
+                for (int p = 0; p < pages.size(); p++) {
+                    writeGzip(dir.resolve(pageFile(generations, p)), pages.get(p));
+                }
+
+                manifest.setProperty(generationKey(generations, "fetched_at"), fetchedAt.toString());
+                manifest.setProperty(generationKey(generations, "pages"), String.valueOf(pages.size()));
+                manifest.setProperty(SEARCH_GENERATIONS, String.valueOf(generations + 1));
+                writeManifest(dir, manifest);
+                refreshedSearches.add(projectKey);
+                generations++;
+
+                if (Configuration.BASIC_DEBUG && Configuration.logger.isLoggable(Level.INFO)) {
+                    Configuration.logger.info(String.format("Snapshot JIRA %s: salvata generazione %d (%d pagine)",
+                            projectKey, generations - 1, pages.size()));
+                }
+            }
+
+            List<byte[]> pages = new ArrayList<>();
+            for (int g = 0; g < generations; g++) {
+                int count = Integer.parseInt(manifest.getProperty(generationKey(g, "pages")));
+                for (int p = 0; p < count; p++) {
+                    pages.add(readGzip(dir.resolve(pageFile(g, p))));
+                }
+            }
+            return pages;
+        }
+    }
+
+    // Versione dello snapshot del progetto (istanti di download di versioni e ricerca), null in modalità LIVE
+    // o se lo snapshot non è ancora completo
+    public String getSnapshotVersion(String projectKey) throws JsonDownloadException {
+        if (mode == JiraSnapshotMode.LIVE) return null;
+
+        synchronized (lockFor(projectKey)) {
+            Properties manifest = readManifest(root.resolve(projectKey));
+            int generations = Integer.parseInt(manifest.getProperty(SEARCH_GENERATIONS, "0"));
+            String projectFetchedAt = manifest.getProperty(PROJECT_FETCHED_AT);
+            if (generations == 0 || projectFetchedAt == null) return null;
+
+            return projectFetchedAt + "|" + generations + "|" + manifest.getProperty(generationKey(generations - 1, "fetched_at"));
+        }
+    }
+
+    private Object lockFor(String projectKey) {
+        return projectLocks.computeIfAbsent(projectKey, k -> new Object());
+    }
+
+    private static String generationKey(int generation, String field) {
+        return "search." + generation + "." + field;
+    }
+
+    private static String pageFile(int generation, int page) {
+        return String.format("search-%d-%03d.json.gz", generation, page);
+    }
+
+    private static Properties readManifest(Path dir) throws JsonDownloadException {
+        Properties manifest = new Properties();
+        Path file = dir.resolve(MANIFEST);
+        if (!Files.exists(file)) return manifest;
+
+        try (InputStream in = Files.newInputStream(file)) {
+            manifest.load(in);
+            return manifest;
+        } catch (IOException e) {
+            throw new JsonDownloadException("Manifest dello snapshot JIRA illeggibile: " + file, e);
+        }
+    }
+
+    private static void writeManifest(Path dir, Properties manifest) throws JsonDownloadException {
+        try {
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, MANIFEST, ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                manifest.store(out, "Snapshot JIRA");
+            }
+            Files.move(tmp, dir.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new JsonDownloadException("Impossibile scrivere il manifest dello snapshot JIRA in " + dir, e);
+        }
+    }
+
+    private static byte[] readGzip(Path file) throws JsonDownloadException {
+        try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new JsonDownloadException("Snapshot JIRA illeggibile: " + file, e);
+        }
+    }
+
+    private static void writeGzip(Path file, byte[] body) throws JsonDownloadException {
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.write(body);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new JsonDownloadException("Impossibile scrivere lo snapshot JIRA: " + file, e);
+        }
+    }
+}
@@ -6,96 +6,74 @@ import analyzer.exception.JiraReleaseException;
 import analyzer.exception.JsonDownloadException;
 import analyzer.model.Release;
 import analyzer.model.TicketInfo;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import util.Configuration;
 import org.json.JSONArray;
 import org.json.JSONObject;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.InputStream;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.regex.Pattern;
 
 public class TicketParser {
 
     private static final String RELEASE_DATE_STRING = "releaseDate";
     private static final String VERSIONS_STRING = "versions";
-    private static final String CORRECT_NAME = "^\\d+\\.\\d+\\.\\d+$";
+    private static final Pattern CORRECT_NAME = Pattern.compile("^\\d+\\.\\d+\\.\\d+$");
+    private static final JsonFactory JSON = new JsonFactory();
 
     public static Map<String, TicketInfo> parseTicketsFromJira() throws JiraParsingException {
-        try {
-            Map<String, TicketInfo> ticketMap = new HashMap<>();
-
-            int startAt = 0;
-            int maxResults = 1000;
-            int total = 1;
-
-            while (startAt < total) {
-                String jql = "project=" + Configuration.getProjectName() + " AND issuetype=Bug AND status in (Resolved, Closed) AND resolution=Fixed";
-                String url = String.format("https://issues.apache.org/jira/rest/api/2/search?jql=%s&startAt=%d&maxResults=%d",
-                        jql.replace(" ", "%20"), startAt, maxResults);
-                JSONObject response = readJsonFromUrl(url);
-                total = response.getInt("total");
-                JSONArray issues = response.getJSONArray("issues");
-
-                for (int i = 0; i < issues.length(); i++) {
-                    JSONObject issue = issues.getJSONObject(i);
+        return parseTicketsFromProject(Configuration.getProjectName());
+    }
 
-                    TicketInfo ticket = parseSingleTicket(issue);
-                    if (ticket == null) {
-                        continue;
-                    }
 
-                    ticketMap.put(ticket.getId(), ticket);
-                }
+    // Campi di un issue letti dallo stream, prima della validazione. Tipo, stato e risoluzione mancano
+    // negli snapshot scaricati prima che venissero richiesti: in quel caso l'issue è un bug chiuso per costruzione
+    private record RawIssue(String key, String created, List<RawVersion> fixVersions, List<RawVersion> versions,
+                            boolean hasStatus, String issueType, String status, String resolution) {}
 
-                startAt += maxResults;
-            }
+    private record RawVersion(String name, String releaseDate) {}
 
-            return ticketMap;
-
-        } catch (Exception e) {
-            throw new JiraParsingException("Errore durante il parsing dei ticket da JIRA", e);
-        }
+    // Stesso filtro della ricerca JIRA dei bug: issuetype=Bug, status in (Resolved, Closed), resolution=Fixed
+    private static boolean isFixedBug(RawIssue issue) {
+        if (!issue.hasStatus()) return true;
+        return "Bug".equals(issue.issueType())
+                && ("Resolved".equals(issue.status()) || "Closed".equals(issue.status()))
+                && "Fixed".equals(issue.resolution());
     }
 
+    private static TicketInfo parseSingleTicket(RawIssue issue) {
+        if (!isFixedBug(issue)) return null;
+        LocalDate createdDate = LocalDate.parse(issue.created().substring(0, 10));
+        if (issue.fixVersions().isEmpty()) return null;
 
-    private static TicketInfo parseSingleTicket(JSONObject issue) {
-        String key = issue.getString("key");
-        JSONObject fields = issue.getJSONObject("fields");
-
-        LocalDate createdDate = LocalDate.parse(fields.getString("created").substring(0, 10));
-        JSONArray fixVersions = fields.getJSONArray("fixVersions");
-        if (fixVersions.length() == 0) return null;
-
-        TicketInfo ticket = new TicketInfo(key);
+        TicketInfo ticket = new TicketInfo(issue.key());
         ticket.setOpeningVersion(createdDate);
 
-        String earliestFVName = parseFixVersions(ticket, fixVersions);
+        String earliestFVName = parseFixVersions(ticket, issue.fixVersions());
         if (earliestFVName == null) return null;
 
-        JSONArray affectedVersions = fields.optJSONArray(VERSIONS_STRING);
-        parseAffectedVersions(ticket, affectedVersions);
+        parseAffectedVersions(ticket, issue.versions());
 
         return ticket;
     }
 
 
-    private static String parseFixVersions(TicketInfo ticket, JSONArray fixVersions) {
+    private static String parseFixVersions(TicketInfo ticket, List<RawVersion> fixVersions) {
         LocalDate earliestFVDate = null;
         String earliestFVName = null;
 
-        for (int j = 0; j < fixVersions.length(); j++) {
-            JSONObject fv = fixVersions.getJSONObject(j);
-            if (fv.has(RELEASE_DATE_STRING) && fv.has("name")) {
-                String fvName = fv.getString("name");
-                if (!fvName.matches(CORRECT_NAME)) {
+        for (RawVersion fv : fixVersions) {
+            if (fv.releaseDate() != null && fv.name() != null) {
+                String fvName = fv.name();
+                if (!CORRECT_NAME.matcher(fvName).matches()) {
                     continue;
                 }
 
-                LocalDate fvDate = LocalDate.parse(fv.getString(RELEASE_DATE_STRING));
+                LocalDate fvDate = LocalDate.parse(fv.releaseDate());
                 ticket.addFixVersion(fvName, fvDate);
 
                 if (earliestFVDate == null || fvDate.isBefore(earliestFVDate)) {
@@ -113,14 +91,11 @@ public class TicketParser {
         return earliestFVName;
     }
 
-    private static void parseAffectedVersions(TicketInfo ticket, JSONArray affectedVersions) {
-        if (affectedVersions == null) return;
-
-        for (int j = 0; j < affectedVersions.length(); j++) {
-            JSONObject av = affectedVersions.getJSONObject(j);
-            if (av.has("name")) {
-                String avName = av.getString("name").trim();
-                if (!avName.matches(CORRECT_NAME)) {
+    private static void parseAffectedVersions(TicketInfo ticket, List<RawVersion> affectedVersions) {
+        for (RawVersion av : affectedVersions) {
+            if (av.name() != null) {
+                String avName = av.name().trim();
+                if (!CORRECT_NAME.matcher(avName).matches()) {
                     continue;
                 }
                 ticket.addAffectedVersion(avName);
@@ -129,46 +104,13 @@ public class TicketParser {
         }
     }
 
-    private static JSONObject readJsonFromUrl(String url) throws JsonDownloadException {
-        try (InputStream is = new URL(url).openStream();
-             BufferedReader rd = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
-
-            StringBuilder sb = new StringBuilder();
-            int cp;
-            while ((cp = rd.read()) != -1) {
-                sb.append((char) cp);
-            }
-
-            return new JSONObject(sb.toString());
-
-        } catch (RuntimeException | IOException e) {
-            throw new JsonDownloadException("Errore nel download o parsing del JSON da URL: " + url, e);
-        }
-    }
-
+    // Ticket dalle pagine dello snapshot JIRA; le pagine successive (aggiornamenti) sostituiscono le precedenti
     public static Map<String, TicketInfo> parseTicketsFromProject(String projectKey) throws JiraParsingException {
         Map<String, TicketInfo> ticketMap = new HashMap<>();
-        int startAt = 0;
-        int maxResults = 1000;
-        int total = 1;
 
         try {
-            while (startAt < total) {
-                String jql = "project=" + projectKey + " AND issuetype=Bug AND status in (Resolved, Closed) AND resolution=Fixed";
-                String url = String.format("https://issues.apache.org/jira/rest/api/2/search?jql=%s&startAt=%d&maxResults=%d",
-                        jql.replace(" ", "%20"), startAt, maxResults);
-                JSONObject response = readJsonFromUrl(url);
-                total = response.getInt("total");
-                JSONArray issues = response.getJSONArray("issues");
-
-                for (int i = 0; i < issues.length(); i++) {
-                    TicketInfo ticket = parseSingleTicket(issues.getJSONObject(i));
-                    if (ticket != null) {
-                        ticketMap.put(ticket.getId(), ticket);
-                    }
-                }
-
-                startAt += maxResults;
+            for (byte[] page : JiraSnapshotStore.getDefault().getBugSearchPages(projectKey)) {
+                parseSearchPage(page, ticketMap);
             }
             return ticketMap;
 
@@ -181,8 +123,7 @@ public class TicketParser {
 
         try{List<Release> releases = new ArrayList<>();
 
-        String url = "https://issues.apache.org/jira/rest/api/2/project/" + projectKey;
-        JSONObject json = readJsonFromUrl(url);
+        JSONObject json = toJson(JiraSnapshotStore.getDefault().getProject(projectKey));
         JSONArray versions = json.getJSONArray(VERSIONS_STRING);
 
         for (int i = 0; i < versions.length(); i++) {
@@ -190,7 +131,7 @@ public class TicketParser {
             if (version.has(RELEASE_DATE_STRING) && version.has("released") && version.getBoolean("released")) {
                 Release r = new Release();
                 String name = version.optString("name", "unknown");
-                if (!name.matches(CORRECT_NAME)) {
+                if (!CORRECT_NAME.matcher(name).matches()) {
                     continue;
                 }
                 r.setName(name);
@@ -209,6 +150,142 @@ public class TicketParser {
     }
 
 
+    // Legge una pagina della ricerca in streaming, senza costruire l'albero JSON: un issue senza fix version
+    // valida, o che non è più un bug chiuso, rimuove l'eventuale ticket omonimo arrivato da una pagina precedente
+    static void parseSearchPage(byte[] page, Map<String, TicketInfo> ticketMap) throws IOException {
+        try (JsonParser parser = JSON.createParser(page)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Pagina JIRA non valida: atteso un oggetto");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                if (parser.nextToken() != JsonToken.START_ARRAY || !"issues".equals(field)) {
+                    parser.skipChildren();
+                    continue;
+                }
+
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    RawIssue issue = readIssue(parser);
+                    TicketInfo ticket = parseSingleTicket(issue);
+                    if (ticket != null) {
+                        ticketMap.put(ticket.getId(), ticket);
+                    } else {
+                        ticketMap.remove(issue.key());
+                    }
+                }
+            }
+        }
+    }
+
+    private static RawIssue readIssue(JsonParser parser) throws IOException {
+        String key = null;
+        String created = null;
+        List<RawVersion> fixVersions = new ArrayList<>();
+        List<RawVersion> versions = new ArrayList<>();
+        boolean hasStatus = false;
+        String issueType = null;
+        String status = null;
+        String resolution = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if ("key".equals(field)) {
+                key = scalarText(parser);
+            } else if ("fields".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    switch (name) {
+                        case "created" -> created = scalarText(parser);
+                        case "fixVersions" -> readVersions(parser, fixVersions);
+                        case VERSIONS_STRING -> readVersions(parser, versions);
+                        case "issuetype" -> issueType = readName(parser);
+                        case "status" -> {
+                            hasStatus = true;
+                            status = readName(parser);
+                        }
+                        case "resolution" -> resolution = readName(parser);
+                        default -> parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (key == null || created == null) {
+            throw new IOException("Issue JIRA senza key o created: " + key);
+        }
+        return new RawIssue(key, created, fixVersions, versions, hasStatus, issueType, status, resolution);
+    }
+
+    // Campo "name" di un oggetto JIRA (tipo, stato, risoluzione), null se il valore è null
+    private static String readName(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            return scalarText(parser);
+        }
+
+        String name = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("name".equals(field)) {
+                name = scalarText(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return name;
+    }
+
+    private static void readVersions(JsonParser parser, List<RawVersion> target) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+
+            String name = null;
+            String releaseDate = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("name".equals(field)) {
+                    name = scalarText(parser);
+                } else if (RELEASE_DATE_STRING.equals(field)) {
+                    releaseDate = scalarText(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            target.add(new RawVersion(name, releaseDate));
+        }
+    }
+
+    // Testo di un valore scalare, null per null JSON, oggetti e array
+    private static String scalarText(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        return token == JsonToken.VALUE_NULL ? null : parser.getText();
+    }
+
+
+    static JSONObject toJson(byte[] body) {
+        return new JSONObject(new String(body, StandardCharsets.UTF_8));
+    }
+
+
     public static void main(String[] args) throws Exception {
         Map<String, TicketInfo> tickets = parseTicketsFromJira();
         CsvTicketDebugWriter.writeTicketCsv(Configuration.getDebugTicketPath(), tickets);
@@ -0,0 +1,50 @@
+package analyzer.metrics;
+
+import net.sourceforge.pmd.reporting.RuleViolation;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Violazioni PMD di un singolo file ordinate per riga, interrogabili per intervallo di righe
+class FileSmellIndex {
+
+    private final int[] lines;
+    private final String[] rules;
+
+    FileSmellIndex(List<RuleViolation> violations) {
+        List<RuleViolation> sorted = new ArrayList<>(violations);
+        sorted.sort(Comparator.comparingInt(RuleViolation::getBeginLine));
+
+        lines = new int[sorted.size()];
+        rules = new String[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            lines[i] = sorted.get(i).getBeginLine();
+            rules[i] = sorted.get(i).getRule().getName();
+        }
+    }
+
+    // Nomi distinti delle regole violate con riga di inizio tra start ed end (inclusi)
+    List<String> smellsBetween(int start, int end) {
+        List<String> names = new ArrayList<>();
+        for (int i = firstAtOrAfter(start); i < lines.length && lines[i] <= end; i++) {
+            if (!names.contains(rules[i])) {
+                names.add(rules[i]);
+            }
+        }
+        return names;
+    }
+
+    private int firstAtOrAfter(int line) {
+        int low = 0;
+        int high = lines.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lines[mid] < line) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
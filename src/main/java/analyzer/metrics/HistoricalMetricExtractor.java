@@ -5,64 +5,87 @@ import analyzer.model.MethodInfo;
 import analyzer.model.Release;
 import analyzer.git.GitRepository;
 import util.Configuration;
-import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.diff.DiffFormatter;
 import org.eclipse.jgit.diff.Edit;
-import org.eclipse.jgit.diff.RawTextComparator;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.util.io.DisabledOutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 
 public class HistoricalMetricExtractor {
 
     private final GitRepository repo;
 
+    // Metodo nella release: path, nome semplice, release e riga di inizio
+    private record MethodKey(int pathId, String simpleName, String releaseId, int startLine) {}
+
+    // Metodo tra le release: path, nome semplice e ordinale tra gli omonimi del file
+    private record CarryKey(int pathId, String simpleName, int ordinal) {}
+
+    // Storico accumulato fino alla release precedente, per file + nome metodo + ordinale tra gli omonimi
+    private Map<CarryKey, MethodHistoryStats> carriedStats = new HashMap<>();
+    private LocalDate previousReleaseDate;
+
     public HistoricalMetricExtractor(GitRepository repo) {
         this.repo = repo;
     }
 
+    // Da invocare una volta per release, in ordine cronologico, con i soli metodi della release:
+    // si riparte dallo storico già accumulato e si analizzano solo i commit in (release precedente, release].
+    // La storia viene percorsa una volta sola e ogni commit viene diffato una volta per tutti i file toccati.
     public void analyzeHistoryForMethods(List<MethodInfo> methods, Release release) {
-        Map<String, List<MethodInfo>> methodsByFile = methods.stream()
-                .collect(Collectors.groupingBy(m -> extractFilePathFromMethodName(m.getMethodName())));
+        // Path relativo calcolato una volta per file (id nella PathTable), non per metodo
+        Map<Integer, String> fileByPathId = new HashMap<>();
+        Map<String, List<MethodInfo>> methodsByFile = new HashMap<>();
+        for (MethodInfo m : methods) {
+            String file = m.getPathId() < 0
+                    ? extractRelativePath(m.getSimpleName())
+                    : fileByPathId.computeIfAbsent(m.getPathId(), id -> extractRelativePath(m.getFilePath()));
+            methodsByFile.computeIfAbsent(file, k -> new ArrayList<>()).add(m);
+        }
 
-        Map<String, MethodHistoryStats> statsMap = new HashMap<>();
-        Map<String, MethodInfo> methodByKey = new HashMap<>();
+        Map<MethodKey, MethodHistoryStats> statsMap = new HashMap<>();
+        Map<MethodKey, MethodInfo> methodByKey = new HashMap<>();
+        Map<MethodKey, CarryKey> carryKeys = new HashMap<>();
 
+        Map<String, MethodRangeIndex> indexByFile = new HashMap<>();
         for (Map.Entry<String, List<MethodInfo>> entry : methodsByFile.entrySet()) {
+            carryKeys.putAll(buildCarryKeys(entry.getValue()));
+            indexByFile.put(entry.getKey(), new MethodRangeIndex(entry.getValue()));
+        }
 
-            String filePath = entry.getKey();
-            List<MethodInfo> methodList = entry.getValue();
-
+        for (MethodInfo m : methods) {
+            MethodKey key = buildMethodKey(m);
+            methodByKey.put(key, m);
 
-            for (MethodInfo m : methodList) {
-                String key = buildMethodKey(m);
-                methodByKey.put(key, m);
+            MethodHistoryStats previous = carriedStats.get(carryKeys.get(key));
+            if (previous != null) {
+                statsMap.put(key, new MethodHistoryStats(previous));
             }
+        }
 
-            try {
-                Iterable<RevCommit> commits = repo.getCommitsTouchingFileBefore(filePath, release.getReleaseDate());
-
-                for (RevCommit commit : commits) {
-                    if (commit.getParentCount() == 0) {
-                        continue;
-                    }
-                    RevCommit parent = repo.parseCommit(commit);
-                    analyzeDiffBetweenCommits(filePath, parent, commit, methodList, statsMap);
+        try {
+            for (RevCommit commit : repo.getCommitsInWindow(previousReleaseDate, release.getReleaseDate())) {
+                // Root commit e merge esclusi: i merge riportano modifiche già contate sui commit del ramo
+                if (commit.getParentCount() != 1) {
+                    continue;
                 }
-
-            } catch (Exception e) {
-                Configuration.logger.log(Level.SEVERE,
-                        String.format("Errore analizzando la storia per il file: %s", filePath), e);
+                dispatchCommitEdits(commit, indexByFile, statsMap);
             }
+
+        } catch (Exception e) {
+            Configuration.logger.log(Level.SEVERE,
+                    String.format("Errore analizzando la storia della release: %s", release.getName()), e);
         }
 
         // Alla fine, applica i valori raccolti ai MethodInfo
-        for (Map.Entry<String, MethodHistoryStats> entry : statsMap.entrySet()) {
-            String key = entry.getKey();
+        Map<CarryKey, MethodHistoryStats> nextCarried = new HashMap<>();
+        for (Map.Entry<MethodKey, MethodHistoryStats> entry : statsMap.entrySet()) {
+            MethodKey key = entry.getKey();
             MethodInfo method = methodByKey.get(key);
             MethodHistoryStats stats = entry.getValue();
 
@@ -71,87 +94,93 @@ public class HistoricalMetricExtractor {
             method.setStmtDeleted(stats.getStmtDeleted());
             method.setChurn(stats.getChurn());
             method.setDistinctAuthors(stats.getDistinctAuthors());
+
+            nextCarried.put(carryKeys.get(key), stats);
+        }
+
+        // I metodi spariti in questa release non vengono più riportati avanti
+        carriedStats = nextCarried;
+        previousReleaseDate = release.getReleaseDate();
+    }
+
+    // Chiave stabile tra release: i metodi omonimi (overload) del file sono distinti dall'ordine di comparsa
+    private Map<MethodKey, CarryKey> buildCarryKeys(List<MethodInfo> methodList) {
+        List<MethodInfo> ordered = new ArrayList<>(methodList);
+        ordered.sort(Comparator.comparingInt(MethodInfo::getStartLine));
+
+        Map<CarryKey, Integer> ordinals = new HashMap<>();
+        Map<MethodKey, CarryKey> keys = new HashMap<>();
+        for (MethodInfo m : ordered) {
+            int ordinal = ordinals.merge(new CarryKey(m.getPathId(), m.getSimpleName(), 0), 1, Integer::sum);
+            keys.put(buildMethodKey(m), new CarryKey(m.getPathId(), m.getSimpleName(), ordinal));
         }
+        return keys;
     }
 
-    private String buildMethodKey(MethodInfo m) {
-        return m.getMethodName() + "@" + m.getReleaseId() + "#" + m.getStartLine();
+    private MethodKey buildMethodKey(MethodInfo m) {
+        return new MethodKey(m.getPathId(), m.getSimpleName(), m.getReleaseId(), m.getStartLine());
     }
 
-    private String extractFilePathFromMethodName(String fullName) {
-        int idx = fullName.lastIndexOf(".java");
+    // Path del file relativo al progetto, come quelli delle edit list dei commit
+    private String extractRelativePath(String filePath) {
+        int idx = filePath.lastIndexOf(".java");
         if (idx != -1) {
-            String relative = fullName.substring(0, idx + 5);
+            String relative = filePath.substring(0, idx + 5);
             // Normalizza rimuovendo il path assoluto
             if (relative.contains(Configuration.getProjectSubstring())) {
                 return relative.substring(relative.indexOf(Configuration.getProjectSubstring()) + Configuration.getProjectSubstring().length());
             }
             return relative;
         }
-        return fullName;
+        return filePath;
     }
 
-    private void analyzeDiffBetweenCommits(String filePath, RevCommit parent, RevCommit current,
-                                           List<MethodInfo> methods,
-                                           Map<String, MethodHistoryStats> statsMap) {
-
-        try (DiffFormatter df = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
-            df.setRepository(repo.getGit().getRepository());
-            df.setDiffComparator(RawTextComparator.DEFAULT);
-            df.setDetectRenames(true);
-
-            List<DiffEntry> diffs = df.scan(parent.getTree(), current.getTree());
-
-            for (DiffEntry diff : diffs) {
-                if (!diff.getNewPath().equals(filePath)) continue;
-
-                List<Edit> edits = df.toFileHeader(diff).toEditList();
-
-                for (MethodInfo method : methods) {
-                    calculateStatsForEdit(method, edits, current, statsMap);
-                }
+    // Applica le edit list del commit ai metodi dei soli file della release che il commit ha toccato
+    private void dispatchCommitEdits(RevCommit commit, Map<String, MethodRangeIndex> indexByFile,
+                                     Map<MethodKey, MethodHistoryStats> statsMap) {
+        try {
+            for (Map.Entry<String, List<Edit>> fileEdits : repo.getJavaEditsByPath(commit).entrySet()) {
+                MethodRangeIndex index = indexByFile.get(fileEdits.getKey());
+                if (index == null) continue;
 
+                calculateStatsForEdits(index, fileEdits.getValue(), commit, statsMap);
             }
 
         } catch (Exception e) {
             Configuration.logger.log(Level.SEVERE,
-                    String.format("Errore nel diff tra commit %s e %s", parent.getName(), current.getName()), e);
+                    String.format("Errore nel diff del commit %s", commit.getName()), e);
         }
     }
 
-    private void calculateStatsForEdit(MethodInfo method, List<Edit> edits, RevCommit current, Map<String, MethodHistoryStats> statsMap) {
-        int start = method.getStartLine();
-        int end = method.getEndLine();
-        int added = 0;
-        int deleted = 0;
-        boolean touched = false;
+    // Per ogni metodo toccato dal commit: righe aggiunte/rimosse dentro il suo intervallo, sommate su tutte le edit
+    private void calculateStatsForEdits(MethodRangeIndex index, List<Edit> edits, RevCommit current,
+                                        Map<MethodKey, MethodHistoryStats> statsMap) {
+        Map<MethodInfo, int[]> touched = new LinkedHashMap<>(); // [0] = added, [1] = deleted
 
         for (Edit edit : edits) {
             int editStart = edit.getBeginB();
             int editEnd = edit.getEndB();
 
-            if (editEnd > start && editStart < end) {
-                touched = true;
+            index.forEachOverlapping(editStart, editEnd, method -> {
+                int start = method.getStartLine();
+                int end = method.getEndLine();
+                int[] counts = touched.computeIfAbsent(method, m -> new int[2]);
 
                 int overlapStart = Math.max(editStart, start);
                 int overlapEnd = Math.min(editEnd, end);
-                added += Math.max(0, overlapEnd - overlapStart);
+                counts[0] += Math.max(0, overlapEnd - overlapStart);
 
-                int editStartA = edit.getBeginA();
-                int editEndA = edit.getEndA();
-                int overlapStartA = Math.max(editStartA, start);
-                int overlapEndA = Math.min(editEndA, end);
-                deleted += Math.max(0, overlapEndA - overlapStartA);
-            }
+                int overlapStartA = Math.max(edit.getBeginA(), start);
+                int overlapEndA = Math.min(edit.getEndA(), end);
+                counts[1] += Math.max(0, overlapEndA - overlapStartA);
+            });
         }
 
-        if (touched) {
-            String key = buildMethodKey(method);
+        String author = current.getAuthorIdent().getName();
+        for (Map.Entry<MethodInfo, int[]> entry : touched.entrySet()) {
+            MethodKey key = buildMethodKey(entry.getKey());
             MethodHistoryStats stats = statsMap.computeIfAbsent(key, k -> new MethodHistoryStats());
-            stats.addEdit(added, deleted, current.getAuthorIdent().getName());
+            stats.addEdit(entry.getValue()[0], entry.getValue()[1], author);
         }
     }
-
-
-
 }
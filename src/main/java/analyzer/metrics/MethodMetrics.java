@@ -0,0 +1,14 @@
+package analyzer.metrics;
+
+// Metriche statiche di un metodo calcolate in un'unica visita dell'AST
+public record MethodMetrics(
+        int loc,
+        int cyclomaticComplexity,
+        int cognitiveComplexity,
+        int parameterCount,
+        int nestingDepth,
+        int statementCount,
+        int localVariableCount,
+        int returnTypeComplexity
+) {
+}
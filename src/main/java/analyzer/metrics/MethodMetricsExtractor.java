@@ -1,8 +1,11 @@
 package analyzer.metrics;
 
+import analyzer.exception.GitOperationException;
 import analyzer.git.GitRepository;
+import analyzer.git.SourceFile;
 import analyzer.model.MethodInfo;
 import analyzer.csv.CsvHandler;
+import analyzer.csv.DatasetCsvSink;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -10,7 +13,14 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import analyzer.model.Release;
 import util.Configuration;
 import com.github.javaparser.JavaParser;
@@ -19,28 +29,53 @@ import com.github.javaparser.ast.body.MethodDeclaration;
 import net.sourceforge.pmd.*;
 import net.sourceforge.pmd.lang.LanguageRegistry;
 import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.document.FileId;
 import net.sourceforge.pmd.reporting.Report;
+import net.sourceforge.pmd.reporting.RuleViolation;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.revwalk.RevCommit;
 import java.nio.charset.StandardCharsets;
 import java.util.logging.Level;
 
 public class MethodMetricsExtractor {
 
-    private final JavaParser parser = new JavaParser();
+    // JavaParser e calcolatore non sono thread-safe: un'istanza per worker
+    private final ThreadLocal<JavaParser> parsers = ThreadLocal.withInitial(JavaParser::new);
+    private final ThreadLocal<StaticMetricCalculator> staticCalcs = ThreadLocal.withInitial(StaticMetricCalculator::new);
     private final List<MethodInfo> methodInfos = new ArrayList<>();
     private String currentRelease;
     private LocalDate currentReleaseDate;
-    private final StaticMetricCalculator staticCalc = new StaticMetricCalculator();
     private final HistoricalMetricExtractor historicalExtractor;
+    private final GitRepository gitRepository;
+    private final int threadCount;
+    private final StaticMetricCache cache;
+    private DatasetCsvSink sink; // null = le righe vengono scritte solo da exportResults
 
 
     public MethodMetricsExtractor(GitRepository gitRepository) {
+        this(gitRepository, Configuration.ANALYSIS_THREADS,
+                Configuration.USE_STATIC_METRICS_CACHE ? new StaticMetricCache(Configuration.STATIC_METRICS_CACHE_DIR) : null);
+    }
+
+    // cache può essere null: in quel caso ogni file viene sempre analizzato
+    public MethodMetricsExtractor(GitRepository gitRepository, int threadCount, StaticMetricCache cache) {
+        this.gitRepository = gitRepository;
         this.historicalExtractor = new HistoricalMetricExtractor(gitRepository);
+        this.threadCount = threadCount;
+        this.cache = cache;
     }
 
     public List<MethodInfo> getAnalyzedMethods() {
         return methodInfos;
     }
 
+    // Le righe di ogni release vengono scritte sul sink appena la release è completa
+    public void setDatasetSink(DatasetCsvSink sink) {
+        this.sink = sink;
+    }
+
     public void setCurrentRelease(String releaseId) {
         this.currentRelease = releaseId;
     }
@@ -49,133 +84,223 @@ public class MethodMetricsExtractor {
         this.currentReleaseDate = currentReleaseDate;
     }
 
-    // Esplora i file nella cartella filtrando quelli .java e chiamando analyzeFile()
-    public void analyzeProject(String projectPath, Release currentRelease) {
-
-        int fileCount = 0;
-
-        try {
-            List<Path> javaFiles = Files.walk(Paths.get(projectPath))
+    // Esplora i file nella cartella (working tree già in checkout) filtrando quelli .java.
+    // IOException solo dalla scrittura delle righe sul sink
+    public void analyzeProject(String projectPath, Release currentRelease) throws IOException {
+        List<SourceFile> sources;
+        try (var paths = Files.walk(Paths.get(projectPath))) {
+            sources = paths
                     .filter(Files::isRegularFile)
-                    .filter(path -> path.toString().endsWith(".java"))
-                    .filter(path -> !path.toString().contains("/target/"))
-                    .filter(path -> !path.toString().contains("/test/"))
-                    .filter(path -> !path.toString().contains("/generated/"))
-                    .filter(path -> !path.toString().contains("/build/"))
+                    .map(Path::toString)
+                    .filter(SourceFile::isAnalyzable)
+                    .map(path -> new SourceFile(path, null))
                     .toList();
 
-            for (Path path : javaFiles) {
-                analyzeFile(path);
-                fileCount++;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        analyzeSources(sources, currentRelease);
+    }
+
+    // Analizza lo snapshot della release leggendo i blob direttamente dal repository, senza checkout
+    public void analyzeSnapshot(RevCommit commit, Release currentRelease) throws GitOperationException, IOException {
+        analyzeSources(gitRepository.listJavaSources(commit), currentRelease);
+    }
+
+    private void analyzeSources(List<SourceFile> sources, Release currentRelease) throws IOException {
+        // Ordine stabile per path: il CSV non dipende dal filesystem né dallo scheduling dei worker
+        List<SourceFile> ordered = sources.stream()
+                .sorted(Comparator.comparing(SourceFile::getPath))
+                .toList();
+        int fileCount = ordered.size();
+
+        List<FileAnalysis> analyses = analyzeFiles(ordered);
+        detectSmells(analyses);
+        storeInCache(analyses);
+
+        List<MethodInfo> releaseMethods = new ArrayList<>();
+        for (FileAnalysis analysis : analyses) {
+            for (MethodInfo info : analysis.methods) {
+                methodInfos.add(info);
+                releaseMethods.add(info);
+
+                if (Configuration.BASIC_DEBUG && methodInfos.size() % 1000 == 0) {
+                    String debugPath = Configuration.getDebugSampledMethodsPath();
+                    logDebugSample(methodInfos.size(), info, analysis, debugPath);
+                }
             }
+        }
 
-            if(Configuration.BASIC_DEBUG && Configuration.logger.isLoggable(Level.INFO)){
-                Configuration.logger.info(String.format("File .java analizzati: %d", fileCount));
-                Configuration.logger.info(String.format("Chiamo analisi storica su %d metodi.", methodInfos.size()));
+        if(Configuration.BASIC_DEBUG && Configuration.logger.isLoggable(Level.INFO)){
+            Configuration.logger.info(String.format("File .java analizzati: %d", fileCount));
+            if (cache != null) {
+                Configuration.logger.info(String.format("Cache metriche statiche: %d hit, %d miss", cache.getHits(), cache.getMisses()));
             }
+            Configuration.logger.info(String.format("Chiamo analisi storica su %d metodi.", releaseMethods.size()));
+        }
 
-            historicalExtractor.analyzeHistoryForMethods(methodInfos, currentRelease);
+        // Solo i metodi della release corrente: lo storico delle release precedenti è già consolidato
+        historicalExtractor.analyzeHistoryForMethods(releaseMethods, currentRelease);
 
+        if (sink != null) {
+            sink.writeRows(releaseMethods);
+            sink.flush();
+        }
+    }
 
-        } catch (IOException e) {
-            e.printStackTrace();
+    // Distribuisce i file sul pool di worker; i risultati tornano nello stesso ordine dei file in input
+    private List<FileAnalysis> analyzeFiles(List<SourceFile> sources) {
+        if (threadCount <= 1) {
+            return sources.stream().map(this::analyzeFile).toList();
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<FileAnalysis>> futures = new ArrayList<>(sources.size());
+            for (SourceFile source : sources) {
+                futures.add(pool.submit(() -> analyzeFile(source)));
+            }
+
+            List<FileAnalysis> results = new ArrayList<>(futures.size());
+            for (Future<FileAnalysis> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Analisi statica interrotta", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Errore durante l'analisi statica dei file", e.getCause());
+        } finally {
+            pool.shutdownNow();
         }
     }
 
-    // Cerca metodi nel file
-    private void analyzeFile(Path path) {
+    // Cerca metodi nel file e ne calcola le metriche statiche, ordinati per riga di inizio
+    private FileAnalysis analyzeFile(SourceFile source) {
+        List<MethodInfo> fileMethods = new ArrayList<>();
+        ObjectId contentId = source.getBlobId();
+        String code = null;
 
         try {
-            CompilationUnit cu = parser.parse(path).getResult().orElse(null);
-            if (cu == null) return;
+            // Dal working tree l'id va calcolato sul contenuto; dallo snapshot è già noto e il blob non va nemmeno letto
+            byte[] workingTreeContent = null;
+            if (contentId == null) {
+                workingTreeContent = Files.readAllBytes(Paths.get(source.getPath()));
+                contentId = new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, workingTreeContent);
+            }
 
-            List<MethodDeclaration> methods = cu.findAll(MethodDeclaration.class);
-            if (methods.isEmpty()) return;
+            if (cache != null) {
+                List<MethodInfo> cached = cache.load(contentId, source.getPath());
+                if (cached != null) {
+                    cached.forEach(this::setReleaseFields);
+                    return new FileAnalysis(source, contentId, null, cached, true);
+                }
+            }
 
-            // PMD config
-            LanguageVersion javaVersion = LanguageRegistry.PMD.getLanguageVersionById("java", "1.6");
+            code = workingTreeContent != null
+                    ? new String(workingTreeContent, StandardCharsets.UTF_8)
+                    : gitRepository.readBlob(contentId);
 
-            Files.readString(path, StandardCharsets.UTF_8);
+            CompilationUnit cu = parsers.get().parse(code).getResult().orElse(null);
+            if (cu == null) return new FileAnalysis(source, contentId, code, fileMethods, false);
 
-            PMDConfiguration config = new PMDConfiguration();
-            config.setDefaultLanguageVersion(javaVersion);
-            config.addRuleSet("category/java/design.xml");
-            config.addRuleSet("category/java/bestpractices.xml");
-            config.addInputPath(path);
+            for (MethodDeclaration method : cu.findAll(MethodDeclaration.class)) {
+                MethodInfo info = analyzeMethod(method, source.getPath());
 
-            // Analizza il file intero con PMD
-            try (PmdAnalysis pmd = PmdAnalysis.create(config)) {
+                if (info == null) continue;
 
-                Report report = pmd.performAnalysisAndCollectReport();
+                info.setStartLine(method.getBegin().map(p -> p.line).orElse(-1));
+                info.setEndLine(method.getEnd().map(p -> p.line).orElse(-1));
+
+                fileMethods.add(info);
+            }
 
-                // Per ogni metodo, filtra gli smell che ci cadono dentro
-                for (MethodDeclaration method : methods) {
-                    MethodInfo info = analyzeMethod(method, path);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
 
-                    if (info == null) continue;
+        fileMethods.sort(Comparator.comparingInt(MethodInfo::getStartLine));
+        return new FileAnalysis(source, contentId, code, fileMethods, false);
+    }
 
-                    int start = method.getBegin().map(p -> p.line).orElse(-1);
-                    int end = method.getEnd().map(p -> p.line).orElse(-1);
+    // Un'unica analisi PMD per tutta la release: regole caricate una volta, file distribuiti sui thread di PMD
+    private void detectSmells(List<FileAnalysis> analyses) {
+        LanguageVersion javaVersion = LanguageRegistry.PMD.getLanguageVersionById("java", "1.6");
 
-                    info.setStartLine(start);
-                    info.setEndLine(end);
+        PMDConfiguration config = new PMDConfiguration();
+        config.setDefaultLanguageVersion(javaVersion);
+        SmellRules.RULESETS.forEach(config::addRuleSet);
+        config.setThreads(threadCount);
 
+        Map<FileId, FileAnalysis> analysesById = new HashMap<>();
 
-                    //AGGIUNTA PER DEBUG -------------------------------------------------------------------------------
-                    info.setMethodCode(method.toString());
+        try (PmdAnalysis pmd = PmdAnalysis.create(config)) {
 
-                    List<String> smellNames = report.getViolations().stream()
-                            .filter(v -> v.getBeginLine() >= start && v.getBeginLine() <= end)
-                            .map(v -> v.getRule().getName()) // oppure getRule().toString()
-                            .distinct()
-                            .toList();
+            // Solo i file non in cache che contengono metodi, come nell'analisi per singolo file
+            for (FileAnalysis analysis : analyses) {
+                if (analysis.fromCache || analysis.methods.isEmpty()) continue;
+                FileId fileId = FileId.fromPathLikeString(analysis.source.getPath());
+                pmd.files().addSourceFile(fileId, analysis.code);
+                analysesById.put(fileId, analysis);
+            }
 
-                    info.setDetectedSmells(smellNames);
-                    info.setNumberOfSmells(smellNames.size()); //4. Number of Code Smells
+            Report report = pmd.performAnalysisAndCollectReport();
 
-                    methodInfos.add(info);
+            Map<FileId, List<RuleViolation>> violationsByFile = new HashMap<>();
+            for (RuleViolation v : report.getViolations()) {
+                violationsByFile.computeIfAbsent(v.getFileId(), k -> new ArrayList<>()).add(v);
+            }
 
-                    if (Configuration.BASIC_DEBUG && methodInfos.size() % 1000 == 0) {
-                        String debugPath = Configuration.getDebugSampledMethodsPath();
-                        MethodInfo sampled = methodInfos.get(methodInfos.size() - 1);
-                        logDebugSample(methodInfos.size(), sampled, debugPath);
-                    }
+            // Per ogni metodo, gli smell che cadono nel suo intervallo di righe
+            for (Map.Entry<FileId, FileAnalysis> entry : analysesById.entrySet()) {
+                FileSmellIndex index = new FileSmellIndex(violationsByFile.getOrDefault(entry.getKey(), List.of()));
 
+                for (MethodInfo info : entry.getValue().methods) {
+                    SmellRules.apply(info, index.smellsBetween(info.getStartLine(), info.getEndLine()));
                 }
             }
-
-        } catch (Exception e) {
-            e.printStackTrace();
         }
     }
 
+    // Salva in cache i file appena analizzati (metriche + smell), saltando quelli non letti correttamente
+    private void storeInCache(List<FileAnalysis> analyses) {
+        if (cache == null) return;
+
+        for (FileAnalysis analysis : analyses) {
+            if (!analysis.fromCache && analysis.code != null) {
+                cache.store(analysis.contentId, analysis.methods);
+            }
+        }
+    }
 
     // Analizza un singolo metodo e ne calcola tutte le metriche
-    private MethodInfo analyzeMethod(MethodDeclaration method, Path path) {
+    private MethodInfo analyzeMethod(MethodDeclaration method, String path) {
 
         try {
 
+            StaticMetricCalculator staticCalc = staticCalcs.get();
             MethodInfo info = new MethodInfo();
 
-            info.setProjectName(Configuration.getProjectColumn());
-            info.setMethodName(path.toString() + "/" + method.getNameAsString());
-            info.setReleaseId(currentRelease);
-            info.setReleaseDate(currentReleaseDate);
+            info.setMethodName(path, method.getNameAsString());
+            setReleaseFields(info);
 
 
             // Metriche statiche principali:
 
-            info.setLoc(staticCalc.calculateLoc(method)); // 1. LOC
-            info.setCyclomaticComplexity(staticCalc.calculateCyclomaticComplexity(method)); // 2. Cyclomatic Complexity
-            info.setCognitiveComplexity(staticCalc.calculateCognitiveComplexity(method)); // 3. Cognitive Complexity
-            info.setParameterCount(staticCalc.calculateParameterCount(method)); // 5. Parameter Count
-            info.setNestingDepth(staticCalc.calculateNestingDepth(method)); // 6. Nesting Depth
-            info.setStatementCount(staticCalc.calculateStatementCount(method));
-            info.setReturnTypeComplexity(staticCalc.calculateReturnTypeComplexity(method));
-            info.setLocalVariableCount(staticCalc.calculateLocalVariableCount(method));
+            MethodMetrics metrics = staticCalc.calculate(method); // una sola visita dell'AST
 
-            // Target
-            info.setBugginess(false);
+            info.setLoc(metrics.loc()); // 1. LOC
+            info.setCyclomaticComplexity(metrics.cyclomaticComplexity()); // 2. Cyclomatic Complexity
+            info.setCognitiveComplexity(metrics.cognitiveComplexity()); // 3. Cognitive Complexity
+            info.setParameterCount(metrics.parameterCount()); // 5. Parameter Count
+            info.setNestingDepth(metrics.nestingDepth()); // 6. Nesting Depth
+            info.setStatementCount(metrics.statementCount());
+            info.setReturnTypeComplexity(metrics.returnTypeComplexity());
+            info.setLocalVariableCount(metrics.localVariableCount());
 
             return info;
 
@@ -185,18 +310,30 @@ public class MethodMetricsExtractor {
         }
     }
 
+    // Campi che dipendono dalla release e non dal contenuto del file
+    private void setReleaseFields(MethodInfo info) {
+        info.setProjectName(Configuration.getProjectColumn());
+        info.setReleaseId(currentRelease);
+        info.setReleaseDate(currentReleaseDate);
+
+        // Target
+        info.setBugginess(false);
+    }
+
     // Esporta il contenuto analizzato nel file CSV
     public void exportResults(String outputPath) {
         CsvHandler csvHandler = new CsvHandler();
         csvHandler.writeCsv(outputPath, methodInfos);
     }
 
-    private void logDebugSample(int index, MethodInfo sampled, String debugPath) {
+    // Il sorgente del metodo non resta in MethodInfo: per i soli metodi campionati il file viene ri-parsato
+    private void logDebugSample(int index, MethodInfo sampled, FileAnalysis analysis, String debugPath) {
         try (FileWriter fw = new FileWriter(debugPath, true)) {
             fw.write("========== METHOD #" + index + " ==========\n");
             fw.write("Method: " + sampled.getMethodName() + "\n");
             fw.write("Release: " + sampled.getReleaseId() + "\n\n");
-            fw.write("Code:\n" + sampled.getMethodCode() + "\n\n");
+            String code = analysis.code != null ? sampleSource(analysis.code, sampled) : "(non disponibile: file letto dalla cache)";
+            fw.write("Code:\n" + code + "\n\n");
 
             fw.write("METRICS:\n");
             fw.write("LOC: " + sampled.getLoc() + "\n");
@@ -207,7 +344,7 @@ public class MethodMetricsExtractor {
             fw.write("Smells: " + sampled.getNumberOfSmells() + "\n");
 
             fw.write("Smell types:\n");
-            for (String s : sampled.getDetectedSmells()) {
+            for (String s : SmellRules.namesOf(sampled)) {
                 fw.write("  - " + s + "\n");
             }
 
@@ -218,4 +355,34 @@ public class MethodMetricsExtractor {
         }
     }
 
+    private String sampleSource(String code, MethodInfo sampled) {
+        CompilationUnit cu = parsers.get().parse(code).getResult().orElse(null);
+        if (cu == null) return "(non disponibile)";
+
+        for (MethodDeclaration method : cu.findAll(MethodDeclaration.class)) {
+            if (method.getBegin().map(p -> p.line).orElse(-1) == sampled.getStartLine()
+                    && method.getNameAsString().equals(sampled.getSimpleName())) {
+                return method.toString();
+            }
+        }
+        return "(non disponibile)";
+    }
+
+    // Risultato dell'analisi di un file: sorgente letto (null se servito dalla cache) e metodi trovati
+    private static final class FileAnalysis {
+        private final SourceFile source;
+        private final ObjectId contentId;
+        private final String code;
+        private final List<MethodInfo> methods;
+        private final boolean fromCache;
+
+        private FileAnalysis(SourceFile source, ObjectId contentId, String code, List<MethodInfo> methods, boolean fromCache) {
+            this.source = source;
+            this.contentId = contentId;
+            this.code = code;
+            this.methods = methods;
+            this.fromCache = fromCache;
+        }
+    }
+
 }
@@ -0,0 +1,61 @@
+package analyzer.metrics;
+
+import analyzer.model.MethodInfo;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Indice sugli intervalli di righe [start, end] dei metodi di un file.
+// Trova i metodi sovrapposti a una edit [begin, end) con una ricerca binaria sugli start
+// e una scansione all'indietro limitata dal massimo prefisso degli end.
+public class MethodRangeIndex {
+
+    private final MethodInfo[] methods;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] prefixMaxEnd;
+
+    public MethodRangeIndex(List<MethodInfo> methodList) {
+        List<MethodInfo> sorted = new ArrayList<>(methodList);
+        sorted.sort(Comparator.comparingInt(MethodInfo::getStartLine));
+
+        int n = sorted.size();
+        methods = sorted.toArray(new MethodInfo[0]);
+        starts = new int[n];
+        ends = new int[n];
+        prefixMaxEnd = new int[n];
+
+        int maxEnd = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            starts[i] = methods[i].getStartLine();
+            ends[i] = methods[i].getEndLine();
+            maxEnd = Math.max(maxEnd, ends[i]);
+            prefixMaxEnd[i] = maxEnd;
+        }
+    }
+
+    // Invoca action su ogni metodo con editEnd > start && editBegin < end (stesso criterio usato finora)
+    public void forEachOverlapping(int editBegin, int editEnd, Consumer<MethodInfo> action) {
+        for (int i = countStartsBefore(editEnd) - 1; i >= 0 && prefixMaxEnd[i] > editBegin; i--) {
+            if (ends[i] > editBegin) {
+                action.accept(methods[i]);
+            }
+        }
+    }
+
+    // Numero di metodi con start < line
+    private int countStartsBefore(int line) {
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < line) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
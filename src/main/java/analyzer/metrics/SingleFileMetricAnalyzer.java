@@ -57,8 +57,7 @@ public class SingleFileMetricAnalyzer {
             LanguageVersion javaVersion = LanguageRegistry.PMD.getLanguageVersionById("java", "1.6");
             PMDConfiguration config = new PMDConfiguration();
             config.setDefaultLanguageVersion(javaVersion);
-            config.addRuleSet("category/java/design.xml");
-            config.addRuleSet("category/java/bestpractices.xml");
+            SmellRules.RULESETS.forEach(config::addRuleSet);
             config.addInputPath(Paths.get(javaFile.getAbsolutePath()));
 
             List<MethodInfo> results = new ArrayList<>();
@@ -67,7 +66,7 @@ public class SingleFileMetricAnalyzer {
 
                 for (MethodDeclaration method : methods) {
                     MethodInfo info = new MethodInfo();
-                    info.setMethodName(javaFile.getAbsolutePath() + "/" + method.getNameAsString());
+                    info.setMethodName(javaFile.getAbsolutePath(), method.getNameAsString());
                     info.setProjectName(Configuration.getProjectColumn());
                     info.setReleaseId("AFMethod");
                     info.setReleaseDate(null); // opzionale
@@ -77,24 +76,23 @@ public class SingleFileMetricAnalyzer {
 
                     info.setStartLine(start);
                     info.setEndLine(end);
-                    info.setMethodCode(method.toString());
 
-                    info.setLoc(staticCalc.calculateLoc(method));
-                    info.setCyclomaticComplexity(staticCalc.calculateCyclomaticComplexity(method));
-                    info.setCognitiveComplexity(staticCalc.calculateCognitiveComplexity(method));
-                    info.setParameterCount(staticCalc.calculateParameterCount(method));
-                    info.setNestingDepth(staticCalc.calculateNestingDepth(method));
-                    info.setStatementCount(staticCalc.calculateStatementCount(method));
-                    info.setReturnTypeComplexity(staticCalc.calculateReturnTypeComplexity(method));
-                    info.setLocalVariableCount(staticCalc.calculateLocalVariableCount(method));
+                    MethodMetrics metrics = staticCalc.calculate(method);
+                    info.setLoc(metrics.loc());
+                    info.setCyclomaticComplexity(metrics.cyclomaticComplexity());
+                    info.setCognitiveComplexity(metrics.cognitiveComplexity());
+                    info.setParameterCount(metrics.parameterCount());
+                    info.setNestingDepth(metrics.nestingDepth());
+                    info.setStatementCount(metrics.statementCount());
+                    info.setReturnTypeComplexity(metrics.returnTypeComplexity());
+                    info.setLocalVariableCount(metrics.localVariableCount());
 
                     List<String> smellNames = report.getViolations().stream()
                             .filter(v -> v.getBeginLine() >= start && v.getBeginLine() <= end)
                             .map(v -> v.getRule().getName())
                             .distinct().toList();
 
-                    info.setDetectedSmells(smellNames);
-                    info.setNumberOfSmells(smellNames.size());
+                    SmellRules.apply(info, smellNames);
                     info.setBugginess(false);
 
                     results.add(info);
@@ -109,7 +107,7 @@ public class SingleFileMetricAnalyzer {
                             m.getMethodName(), m.getLoc(), m.getCyclomaticComplexity(), m.getCognitiveComplexity(),
                             m.getParameterCount(), m.getNestingDepth(), m.getStatementCount(),
                             m.getReturnTypeComplexity(), m.getLocalVariableCount(), m.getNumberOfSmells(),
-                            String.join(";", m.getDetectedSmells())));
+                            String.join(";", SmellRules.namesOf(m))));
                 }
             }
 
@@ -0,0 +1,87 @@
+package analyzer.metrics;
+
+import analyzer.model.MethodInfo;
+import net.sourceforge.pmd.lang.rule.Rule;
+import net.sourceforge.pmd.lang.rule.RuleSetLoader;
+import util.Configuration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Dizionario delle regole PMD usate per gli smell: ogni regola ha un indice fisso (ordine dei ruleset),
+// così gli smell di un metodo stanno in una maschera di 128 bit invece che in una lista di nomi.
+final class SmellRules {
+
+    static final List<String> RULESETS = List.of("category/java/design.xml", "category/java/bestpractices.xml");
+
+    private static final int CAPACITY = 2 * Long.SIZE;
+
+    private static final List<String> NAMES;
+    private static final Map<String, Integer> INDEX = new HashMap<>();
+    // Regole fuori dal dizionario già segnalate nel log (una volta sola per nome)
+    private static final Set<String> UNKNOWN = ConcurrentHashMap.newKeySet();
+
+    static {
+        RuleSetLoader loader = new RuleSetLoader();
+        List<String> names = new ArrayList<>();
+        for (String ruleset : RULESETS) {
+            for (Rule rule : loader.loadFromResource(ruleset).getRules()) {
+                if (INDEX.putIfAbsent(rule.getName(), names.size()) == null) {
+                    names.add(rule.getName());
+                }
+            }
+        }
+        if (names.size() > CAPACITY) {
+            throw new IllegalStateException(String.format("Troppe regole PMD per la maschera degli smell: %d", names.size()));
+        }
+        NAMES = Collections.unmodifiableList(names);
+    }
+
+    private SmellRules() {
+        // Prevent instantiation
+    }
+
+    // Impronta del dizionario: le maschere salvate in cache valgono solo con lo stesso elenco di regole
+    static int fingerprint() {
+        return NAMES.hashCode();
+    }
+
+    // Imposta maschera e numero di smell del metodo a partire dai nomi delle regole violate;
+    // le regole fuori dal dizionario vengono ignorate
+    static void apply(MethodInfo info, Iterable<String> ruleNames) {
+        long low = 0;
+        long high = 0;
+        for (String name : ruleNames) {
+            Integer index = INDEX.get(name);
+            if (index == null) {
+                if (UNKNOWN.add(name)) {
+                    Configuration.logger.warning("Regola PMD non presente nel dizionario degli smell, ignorata: " + name);
+                }
+                continue;
+            }
+            if (index < Long.SIZE) {
+                low |= 1L << index;
+            } else {
+                high |= 1L << (index - Long.SIZE);
+            }
+        }
+        info.setSmellMask(low, high);
+        info.setNumberOfSmells(Long.bitCount(low) + Long.bitCount(high)); //4. Number of Code Smells
+    }
+
+    // Nomi degli smell del metodo, nell'ordine del dizionario
+    static List<String> namesOf(MethodInfo info) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < NAMES.size(); i++) {
+            long word = i < Long.SIZE ? info.getSmellMaskLow() : info.getSmellMaskHigh();
+            if ((word & (1L << (i % Long.SIZE))) != 0) {
+                names.add(NAMES.get(i));
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,136 @@
+package analyzer.metrics;
+
+import analyzer.model.MethodInfo;
+import org.eclipse.jgit.lib.ObjectId;
+import util.Configuration;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+// Cache su disco delle metriche statiche e degli smell di un file, indirizzata per SHA del blob.
+// Un file invariato tra due release viene letto da qui invece di essere ri-parsato e ri-analizzato con PMD.
+public class StaticMetricCache {
+
+    // Da incrementare quando cambia il calcolo delle metriche; un cambio delle regole PMD è coperto dall'impronta di SmellRules
+    private static final int FORMAT_VERSION = 4;
+
+    private final Path root;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    public StaticMetricCache(String directory) {
+        this.root = Paths.get(directory);
+    }
+
+    // Metodi del file con metriche e smell già calcolati, null se il blob non è in cache
+    public List<MethodInfo> load(ObjectId blobId, String path) {
+        Path entry = entryPath(blobId);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            if (in.readInt() != FORMAT_VERSION || in.readInt() != SmellRules.fingerprint()) {
+                misses.incrementAndGet();
+                return null;
+            }
+
+            int count = in.readInt();
+            List<MethodInfo> methods = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                methods.add(readMethod(in, path));
+            }
+
+            hits.incrementAndGet();
+            return methods;
+
+        } catch (NoSuchFileException e) {
+            misses.incrementAndGet();
+            return null;
+        } catch (IOException e) {
+            Configuration.logger.log(Level.WARNING, String.format("Voce di cache illeggibile: %s", entry), e);
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    // Salva i metodi del file; scrittura su file temporaneo + rename, così una run interrotta non lascia voci parziali
+    public void store(ObjectId blobId, List<MethodInfo> methods) {
+        Path entry = entryPath(blobId);
+
+        try {
+            Files.createDirectories(entry.getParent());
+            Path tmp = Files.createTempFile(entry.getParent(), blobId.getName(), ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(SmellRules.fingerprint());
+                out.writeInt(methods.size());
+                for (MethodInfo m : methods) {
+                    writeMethod(out, m);
+                }
+            }
+
+            Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (IOException e) {
+            Configuration.logger.log(Level.WARNING, String.format("Impossibile scrivere la voce di cache: %s", entry), e);
+        }
+    }
+
+    public int getHits() { return hits.get(); }
+
+    public int getMisses() { return misses.get(); }
+
+    private Path entryPath(ObjectId blobId) {
+        String sha = blobId.getName();
+        return root.resolve(sha.substring(0, 2)).resolve(sha.substring(2));
+    }
+
+    private static void writeMethod(DataOutputStream out, MethodInfo m) throws IOException {
+        // In cache va solo il nome semplice: lo stesso blob può trovarsi sotto path diversi
+        out.writeUTF(m.getSimpleName());
+        out.writeInt(m.getStartLine());
+        out.writeInt(m.getEndLine());
+        out.writeInt(m.getLoc());
+        out.writeInt(m.getCyclomaticComplexity());
+        out.writeInt(m.getCognitiveComplexity());
+        out.writeInt(m.getParameterCount());
+        out.writeInt(m.getNestingDepth());
+        out.writeInt(m.getStatementCount());
+        out.writeInt(m.getReturnTypeComplexity());
+        out.writeInt(m.getLocalVariableCount());
+
+        out.writeLong(m.getSmellMaskLow());
+        out.writeLong(m.getSmellMaskHigh());
+    }
+
+    private static MethodInfo readMethod(DataInputStream in, String path) throws IOException {
+        MethodInfo m = new MethodInfo();
+        m.setMethodName(path, in.readUTF());
+        m.setStartLine(in.readInt());
+        m.setEndLine(in.readInt());
+        m.setLoc(in.readInt());
+        m.setCyclomaticComplexity(in.readInt());
+        m.setCognitiveComplexity(in.readInt());
+        m.setParameterCount(in.readInt());
+        m.setNestingDepth(in.readInt());
+        m.setStatementCount(in.readInt());
+        m.setReturnTypeComplexity(in.readInt());
+        m.setLocalVariableCount(in.readInt());
+
+        long smellsLow = in.readLong();
+        long smellsHigh = in.readLong();
+        m.setSmellMask(smellsLow, smellsHigh);
+        m.setNumberOfSmells(Long.bitCount(smellsLow) + Long.bitCount(smellsHigh));
+        return m;
+    }
+}
@@ -2,6 +2,7 @@ package analyzer.metrics;
 
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
 import com.github.javaparser.ast.expr.ConditionalExpr;
 import com.github.javaparser.ast.stmt.*;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
@@ -10,85 +11,87 @@ import com.github.javaparser.ast.type.Type;
 
 public class StaticMetricCalculator {
 
-    public int calculateLoc(MethodDeclaration method) {
-        String[] lines = method.toString().split("\\r?\\n");
-        int loc = 0;
-        for (String line : lines) {
-            String trimmed = line.trim();
-            if (!trimmed.isEmpty() && !trimmed.equals("{") && !trimmed.equals("}") && !trimmed.startsWith("//")) {
-                loc++;
-            }
-        }
-        return loc;
-    }
-
-    public int calculateCyclomaticComplexity(MethodDeclaration method) {
-        int complexity = 1;
-        complexity += method.findAll(IfStmt.class).size();
-        complexity += method.findAll(ForStmt.class).size();
-        complexity += method.findAll(ForEachStmt.class).size();
-        complexity += method.findAll(WhileStmt.class).size();
-        complexity += method.findAll(DoStmt.class).size();
-        complexity += method.findAll(SwitchEntry.class).size();
-        complexity += method.findAll(CatchClause.class).size();
-        complexity += method.findAll(ConditionalExpr.class).size();
-        return complexity;
-    }
-
-    public int calculateCognitiveComplexity(MethodDeclaration method) {
-        int complexity = 0;
-        complexity += method.findAll(IfStmt.class).size();
-        complexity += method.findAll(ForStmt.class).size();
-        complexity += method.findAll(ForEachStmt.class).size();
-        complexity += method.findAll(WhileStmt.class).size();
-        complexity += method.findAll(DoStmt.class).size();
-        complexity += method.findAll(SwitchStmt.class).size();
-        complexity += method.findAll(CatchClause.class).size();
-        complexity += method.findAll(ConditionalExpr.class).size();
-        int nestingPenalty = Math.max(0, calculateNestingDepth(method) - 1);
-        return complexity + nestingPenalty;
-    }
-
-    public int calculateParameterCount(MethodDeclaration method) {
-        return method.getParameters().size();
+    // Tutte le metriche del metodo con una sola visita dell'AST (le LOC restano calcolate sul testo stampato)
+    public MethodMetrics calculate(MethodDeclaration method) {
+        Counters counters = new Counters();
+        visit(method, 0, counters);
+
+        int branches = counters.ifs + counters.fors + counters.forEachs + counters.whiles + counters.dos
+                + counters.catches + counters.conditionals;
+
+        int cyclomatic = 1 + branches + counters.switchEntries;
+        int cognitive = branches + counters.switches + Math.max(0, counters.maxDepth - 1);
+
+        return new MethodMetrics(
+                calculateLoc(method),
+                cyclomatic,
+                cognitive,
+                method.getParameters().size(),
+                counters.maxDepth,
+                method.getBody().map(b -> b.getStatements().size()).orElse(0),
+                counters.localVariables,
+                computeTypeComplexity(method.getType())
+        );
     }
 
-    public int calculateNestingDepth(MethodDeclaration method) {
-        return calculateNestingDepthRecursive(method, 0);
-    }
+    // depth = numero di costrutti annidanti tra gli antenati del nodo
+    private void visit(Node node, int depth, Counters counters) {
+        if (depth > counters.maxDepth) {
+            counters.maxDepth = depth;
+        }
 
-    private int calculateNestingDepthRecursive(Node node, int currentDepth) {
-        int maxDepth = currentDepth;
-
-        if (node instanceof IfStmt ||
-                node instanceof ForStmt ||
-                node instanceof ForEachStmt ||
-                node instanceof WhileStmt ||
-                node instanceof DoStmt ||
-                node instanceof SwitchStmt ||
-                node instanceof TryStmt ||
-                node instanceof CatchClause) {
-            currentDepth++;
+        boolean nesting = false;
+
+        if (node instanceof IfStmt) {
+            counters.ifs++;
+            nesting = true;
+        } else if (node instanceof ForStmt) {
+            counters.fors++;
+            nesting = true;
+        } else if (node instanceof ForEachStmt) {
+            counters.forEachs++;
+            nesting = true;
+        } else if (node instanceof WhileStmt) {
+            counters.whiles++;
+            nesting = true;
+        } else if (node instanceof DoStmt) {
+            counters.dos++;
+            nesting = true;
+        } else if (node instanceof SwitchStmt) {
+            counters.switches++;
+            nesting = true;
+        } else if (node instanceof TryStmt) {
+            nesting = true;
+        } else if (node instanceof CatchClause) {
+            counters.catches++;
+            nesting = true;
+        } else if (node instanceof SwitchEntry) {
+            counters.switchEntries++;
+        } else if (node instanceof ConditionalExpr) {
+            counters.conditionals++;
+        } else if (node instanceof VariableDeclarator
+                && node.getParentNode().isPresent()
+                && !(node.getParentNode().get() instanceof Parameter)) {
+            counters.localVariables++;
         }
 
+        int childDepth = nesting ? depth + 1 : depth;
         for (Node child : node.getChildNodes()) {
-            int childDepth = calculateNestingDepthRecursive(child, currentDepth);
-            if (childDepth > maxDepth) {
-                maxDepth = childDepth;
-            }
+            visit(child, childDepth, counters);
         }
-
-        return maxDepth;
-    }
-
-    public int calculateStatementCount(MethodDeclaration method) {
-        return method.getBody().map(b -> b.getStatements().size()).orElse(0);
     }
 
-
-    public int calculateReturnTypeComplexity(MethodDeclaration method) {
-        Type returnType = method.getType();
-        return computeTypeComplexity(returnType);
+    // Righe del metodo stampato da JavaParser, escluse quelle vuote, le sole parentesi graffe e i commenti "//"
+    private int calculateLoc(MethodDeclaration method) {
+        String[] lines = method.toString().split("\\r?\\n");
+        int loc = 0;
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.equals("{") && !trimmed.equals("}") && !trimmed.startsWith("//")) {
+                loc++;
+            }
+        }
+        return loc;
     }
 
     private int computeTypeComplexity(Type type) {
@@ -112,12 +115,18 @@ public class StaticMetricCalculator {
         return 1;
     }
 
-
-    public int calculateLocalVariableCount(MethodDeclaration method) {
-        return method.findAll(VariableDeclarator.class).stream()
-                .filter(v -> v.getParentNode().isPresent() &&
-                        !(v.getParentNode().get() instanceof com.github.javaparser.ast.body.Parameter))
-                .toList()
-                .size();
+    // Contatori accumulati durante la visita
+    private static final class Counters {
+        private int ifs;
+        private int fors;
+        private int forEachs;
+        private int whiles;
+        private int dos;
+        private int switches;
+        private int switchEntries;
+        private int catches;
+        private int conditionals;
+        private int localVariables;
+        private int maxDepth;
     }
 }
@@ -9,6 +9,17 @@ public class MethodHistoryStats {
     private int stmtDeleted = 0;
     private final Set<String> authors = new HashSet<>();
 
+    public MethodHistoryStats() {
+    }
+
+    // Copia dello storico accumulato, da estendere con i commit della release successiva
+    public MethodHistoryStats(MethodHistoryStats other) {
+        this.methodHistories = other.methodHistories;
+        this.stmtAdded = other.stmtAdded;
+        this.stmtDeleted = other.stmtDeleted;
+        this.authors.addAll(other.authors);
+    }
+
     public void addEdit(int added, int deleted, String author) {
         this.methodHistories++;
         this.stmtAdded += added;
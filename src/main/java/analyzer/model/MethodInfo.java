@@ -1,12 +1,12 @@
 package analyzer.model;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
 
 public class MethodInfo {
     private String projectName;
-    private String methodName;
+    // Nome completo = path del file (id nella PathTable, -1 se assente) + "/" + nome semplice
+    private int pathId = -1;
+    private String simpleName;
     private String releaseId;
     private int loc;
     private int cyclomaticComplexity;
@@ -19,8 +19,9 @@ public class MethodInfo {
     private int stmtDeleted;
     private int churn;
     private boolean bugginess;
-    private String methodCode;
-    private List<String> detectedSmells = new ArrayList<>();
+    // Smell rilevati come maschera sugli indici delle regole PMD (vedi SmellRules)
+    private long smellMaskLow;
+    private long smellMaskHigh;
     private int startLine;
     private int endLine;
     private LocalDate releaseDate;
@@ -49,24 +50,42 @@ public class MethodInfo {
 
     public void setReleaseDate(LocalDate releaseDate) { this.releaseDate = releaseDate; }
 
-    public String getMethodCode() { return methodCode; }
-
-    public void setMethodCode(String methodCode) { this.methodCode = methodCode; }
-
     public String getProjectName() {
         return projectName;
     }
 
     public void setProjectName(String projectName) { this.projectName = projectName; }
 
+    // Compone il nome completo a ogni chiamata: nei cicli sulle righe usare getPathId/getFilePath e getSimpleName
     public String getMethodName() {
-        return methodName;
+        return pathId < 0 ? simpleName : PathTable.pathOf(pathId) + "/" + simpleName;
     }
 
     public void setMethodName(String methodName) {
-        this.methodName = methodName;
+        int slash = methodName == null ? -1 : methodName.lastIndexOf('/');
+        if (slash < 0) {
+            this.pathId = -1;
+            this.simpleName = methodName;
+        } else {
+            setMethodName(methodName.substring(0, slash), methodName.substring(slash + 1));
+        }
+    }
+
+    public void setMethodName(String filePath, String simpleName) {
+        this.pathId = PathTable.idOf(filePath);
+        this.simpleName = simpleName;
+    }
+
+    // Path del file che contiene il metodo, null se il nome non ha path
+    public String getFilePath() {
+        return pathId < 0 ? null : PathTable.pathOf(pathId);
     }
 
+    public String getSimpleName() { return simpleName; }
+
+    // Id del path nella PathTable, -1 se il nome non ha path
+    public int getPathId() { return pathId; }
+
     public String getReleaseId() {
         return releaseId;
     }
@@ -163,9 +182,14 @@ public class MethodInfo {
         this.bugginess = bugginess;
     }
 
-    public List<String> getDetectedSmells() { return detectedSmells; }
+    public long getSmellMaskLow() { return smellMaskLow; }
 
-    public void setDetectedSmells(List<String> detectedSmells) { this.detectedSmells = detectedSmells; }
+    public long getSmellMaskHigh() { return smellMaskHigh; }
+
+    public void setSmellMask(long low, long high) {
+        this.smellMaskLow = low;
+        this.smellMaskHigh = high;
+    }
 
     public int getStartLine() { return startLine;}
 
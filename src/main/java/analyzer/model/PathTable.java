@@ -0,0 +1,43 @@
+package analyzer.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Tabella dei path dei file sorgente: ogni MethodInfo tiene solo l'id del path, condiviso
+// da tutti i metodi del file in tutte le release.
+// Le letture non prendono lock: solo la registrazione di un path nuovo è sincronizzata. L'array viene
+// ricopiato quando cresce e ripubblicato (volatile) prima che l'id sia visibile nella mappa.
+public final class PathTable {
+
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile String[] paths = new String[1024];
+    private static int size;
+
+    private PathTable() {
+        // Prevent instantiation
+    }
+
+    public static int idOf(String path) {
+        Integer id = IDS.get(path);
+        return id != null ? id : register(path);
+    }
+
+    public static String pathOf(int id) {
+        return paths[id];
+    }
+
+    private static synchronized int register(String path) {
+        Integer id = IDS.get(path);
+        if (id != null) return id;
+
+        String[] current = paths;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            paths = current;
+        }
+        current[size] = path;
+        IDS.put(path, size);
+        return size++;
+    }
+}
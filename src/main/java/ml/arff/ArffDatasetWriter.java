@@ -0,0 +1,164 @@
+package ml.arff;
+
+import analyzer.model.MethodInfo;
+import ml.dataset.DatasetSchema;
+import ml.dataset.MethodNames;
+import weka.core.Utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Scrive il dataset in ARFF (denso o sparso) con uno schema fisso, senza passare da CSVLoader:
+// Project, Method e ReleaseID nominali (valori nell'ordine di prima apparizione), le 14 metriche numeriche,
+// Bugginess nominale {No,Yes}. Intestazione e righe coincidono con quelle prodotte finora da CSVLoader + ArffSaver.
+public final class ArffDatasetWriter {
+
+    private static final int CSV_COLUMNS = DatasetSchema.COLUMN_COUNT;
+
+    private final boolean sparse;
+
+    // Indice di ogni valore nominale per colonna (Project, Method, ReleaseID), nell'ordine di prima apparizione
+    private final List<Map<String, Integer>> nominalValues = List.of(
+            new LinkedHashMap<>(), new LinkedHashMap<>(), new LinkedHashMap<>());
+
+    private ArffDatasetWriter(boolean sparse) {
+        this.sparse = sparse;
+    }
+
+    // ARFF dai metodi in memoria, nello stesso ordine del CSV
+    public static void write(Path arffPath, String relation, List<MethodInfo> methods, boolean sparse) throws IOException {
+        ArffDatasetWriter writer = new ArffDatasetWriter(sparse);
+        MethodNames names = new MethodNames();
+        for (MethodInfo m : methods) {
+            writer.register(DatasetSchema.nominalsOf(m, names));
+        }
+
+        int[] metrics = new int[DatasetSchema.NUMERIC_ATTRIBUTES.length];
+        try (BufferedWriter out = Files.newBufferedWriter(arffPath, StandardCharsets.UTF_8)) {
+            writer.writeHeader(out, relation);
+            for (MethodInfo m : methods) {
+                DatasetSchema.metricsOf(m, metrics);
+                writer.writeRow(out, m.getProjectName(), names.of(m), m.getReleaseId(), metrics, m.isBugginess());
+            }
+        }
+    }
+
+    // ARFF dal CSV del dataset (separatore ';'), in due passate: valori nominali, poi righe
+    public static void convertCsv(Path csvPath, Path arffPath, String relation, boolean sparse) throws IOException {
+        ArffDatasetWriter writer = new ArffDatasetWriter(sparse);
+        try (BufferedReader in = Files.newBufferedReader(csvPath, StandardCharsets.UTF_8)) {
+            in.readLine(); // intestazione
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                String[] fields = split(line);
+                writer.register(fields[0], fields[1], fields[2]);
+            }
+        }
+
+        int[] metrics = new int[DatasetSchema.NUMERIC_ATTRIBUTES.length];
+        try (BufferedReader in = Files.newBufferedReader(csvPath, StandardCharsets.UTF_8);
+             BufferedWriter out = Files.newBufferedWriter(arffPath, StandardCharsets.UTF_8)) {
+            writer.writeHeader(out, relation);
+            in.readLine();
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                String[] fields = split(line);
+                for (int i = 0; i < metrics.length; i++) {
+                    metrics[i] = Integer.parseInt(fields[DatasetSchema.NOMINAL_ATTRIBUTES.length + i]);
+                }
+                writer.writeRow(out, fields[0], fields[1], fields[2], metrics, DatasetSchema.YES.equals(fields[CSV_COLUMNS - 1]));
+            }
+        }
+    }
+
+    private static String[] split(String line) throws IOException {
+        String[] fields = line.split(";", -1);
+        if (fields.length != CSV_COLUMNS) {
+            throw new IOException(String.format("Riga CSV con %d colonne invece di %d: %s", fields.length, CSV_COLUMNS, line));
+        }
+        return fields;
+    }
+
+    private void register(String... values) {
+        for (int i = 0; i < values.length; i++) {
+            Map<String, Integer> column = nominalValues.get(i);
+            column.putIfAbsent(values[i], column.size());
+        }
+    }
+
+    private void writeHeader(Writer out, String relation) throws IOException {
+        out.write("@relation " + Utils.quote(relation) + "\n\n");
+
+        for (int i = 0; i < DatasetSchema.NOMINAL_ATTRIBUTES.length; i++) {
+            out.write("@attribute " + Utils.quote(DatasetSchema.NOMINAL_ATTRIBUTES[i]) + " {");
+            boolean first = true;
+            for (String value : nominalValues.get(i).keySet()) {
+                if (!first) out.write(',');
+                out.write(Utils.quote(value));
+                first = false;
+            }
+            out.write("}\n");
+        }
+        for (String name : DatasetSchema.NUMERIC_ATTRIBUTES) {
+            out.write("@attribute " + Utils.quote(name) + " numeric\n");
+        }
+        out.write("@attribute " + DatasetSchema.CLASS_ATTRIBUTE + " {" + DatasetSchema.NO + "," + DatasetSchema.YES + "}\n\n@data\n");
+    }
+
+    private void writeRow(Writer out, String project, String method, String release, int[] metrics, boolean buggy) throws IOException {
+        if (sparse) {
+            writeSparseRow(out, new String[] {project, method, release}, metrics, buggy);
+            return;
+        }
+
+        out.write(Utils.quote(project));
+        out.write(',');
+        out.write(Utils.quote(method));
+        out.write(',');
+        out.write(Utils.quote(release));
+        for (int value : metrics) {
+            out.write(',');
+            out.write(Integer.toString(value));
+        }
+        out.write(',');
+        out.write(buggy ? DatasetSchema.YES : DatasetSchema.NO);
+        out.write('\n');
+    }
+
+    // Formato sparso di Weka: solo gli attributi diversi da 0 (per i nominali, diversi dal primo valore)
+    private void writeSparseRow(Writer out, String[] nominals, int[] metrics, boolean buggy) throws IOException {
+        out.write('{');
+        boolean first = true;
+
+        for (int i = 0; i < nominals.length; i++) {
+            if (nominalValues.get(i).get(nominals[i]) == 0) continue;
+            first = separator(out, first);
+            out.write(i + " " + Utils.quote(nominals[i]));
+        }
+        for (int i = 0; i < metrics.length; i++) {
+            if (metrics[i] == 0) continue;
+            first = separator(out, first);
+            out.write((nominals.length + i) + " " + metrics[i]);
+        }
+        if (buggy) {
+            separator(out, first);
+            out.write((CSV_COLUMNS - 1) + " " + DatasetSchema.YES);
+        }
+        out.write("}\n");
+    }
+
+    private static boolean separator(Writer out, boolean first) throws IOException {
+        if (!first) out.write(',');
+        return false;
+    }
+}
@@ -39,61 +39,29 @@ public class CSVToARFFConverter {
 package ml.arff;
 
 import util.Configuration;
-import weka.core.Attribute;
-import weka.core.Instances;
-import weka.core.converters.CSVLoader;
-import weka.core.converters.ArffSaver;
 
-import java.io.File;
-import java.util.ArrayList;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.logging.Level;
 
 public class CSVToARFFConverter {
 
     public static void main(String[] args) throws Exception {
-        String csvPath = Configuration.getOutputCsvPath();
-        String arffPath = Configuration.getOutputArffPath();
-
-        CSVLoader loader = new CSVLoader();
-        loader.setOptions(new String[]{"-F", ";"});
-        loader.setSource(new File(csvPath));
-        Instances data = loader.getDataSet();
-
-        // === Riordina le etichette: {No, Yes} ===
-        int classIndex = data.numAttributes() - 1;
-        Attribute originalAttr = data.attribute(classIndex);
+        Path csvPath = Paths.get(Configuration.getOutputCsvPath());
+        Path arffPath = Paths.get(Configuration.getOutputArffPath());
 
-        if (originalAttr.isNominal()
-                && originalAttr.numValues() == 2
-                && "Yes".equals(originalAttr.value(0))
-                && "No".equals(originalAttr.value(1))) {
-
-            if (Configuration.logger.isLoggable(Level.INFO))
-                Configuration.logger.info("Riordino etichette Bugginess: {Yes,No} → {No,Yes}");
-
-            ArrayList<String> reordered = new ArrayList<>();
-            reordered.add("No");
-            reordered.add("Yes");
-
-            Attribute newAttr = new Attribute(originalAttr.name(), reordered);
-            Instances newData = new Instances(data);
-            newData.replaceAttributeAt(newAttr, classIndex);
-
-            for (int i = 0; i < newData.numInstances(); i++) {
-                String label = data.instance(i).stringValue(classIndex);
-                newData.instance(i).setValue(classIndex, label);
-            }
-
-            data = newData;
-        }
-
-        ArffSaver saver = new ArffSaver();
-        saver.setInstances(data);
-        saver.setFile(new File(arffPath));
-        saver.writeBatch();
+        // Schema fisso ({No,Yes} già nell'ordine giusto), righe convertite in streaming
+        ArffDatasetWriter.convertCsv(csvPath, arffPath, relationName(csvPath), Configuration.SPARSE_ARFF);
 
         if (Configuration.logger.isLoggable(Level.INFO)) {
             Configuration.logger.info(String.format("Conversione completata: path = %s", arffPath));
         }
     }
+
+    // Nome della relazione come lo assegnava CSVLoader: nome del file CSV senza estensione
+    public static String relationName(Path csvPath) {
+        String name = csvPath.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
 }
@@ -0,0 +1,185 @@
+package ml.dataset;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Dataset binario colonnare mappato in memoria (formato di ColumnarDatasetWriter).
+// Le colonne si leggono come array primitivi; le Instances di Weka vengono costruite solo su richiesta.
+public final class ColumnarDataset {
+
+    private final MappedByteBuffer data;
+    private final int rows;
+    private final String relation;
+    private final String[] nominalNames;
+    private final String[][] dictionaries;
+    private final String[] numericNames;
+    private final int codesOffset;
+    private final int metricsOffset;
+    private final int bugginessOffset;
+
+    private ColumnarDataset(MappedByteBuffer data) throws IOException {
+        this.data = data;
+        data.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (data.getInt() != ColumnarDatasetWriter.MAGIC) {
+            throw new IOException("File non in formato dataset colonnare");
+        }
+        if (data.getInt() != ColumnarDatasetWriter.FORMAT_VERSION) {
+            throw new IOException("Versione del dataset colonnare non supportata");
+        }
+
+        rows = data.getInt();
+        relation = readString(data);
+
+        int nominalCount = data.getInt();
+        nominalNames = new String[nominalCount];
+        dictionaries = new String[nominalCount][];
+        for (int c = 0; c < nominalCount; c++) {
+            nominalNames[c] = readString(data);
+            String[] dictionary = new String[data.getInt()];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = readString(data);
+            }
+            dictionaries[c] = dictionary;
+        }
+
+        numericNames = new String[data.getInt()];
+        for (int c = 0; c < numericNames.length; c++) {
+            numericNames[c] = readString(data);
+        }
+
+        codesOffset = align8(data.position());
+        metricsOffset = codesOffset + nominalCount * rows * Integer.BYTES;
+        bugginessOffset = align8(metricsOffset + numericNames.length * rows * Integer.BYTES);
+
+        long expected = bugginessOffset + (long) ((rows + 63) / 64) * Long.BYTES;
+        if (data.capacity() < expected) {
+            throw new IOException("Dataset colonnare troncato");
+        }
+    }
+
+    public static ColumnarDataset load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // Il mapping resta valido anche dopo la chiusura del canale
+            return new ColumnarDataset(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int numRows() {
+        return rows;
+    }
+
+    public String getRelation() {
+        return relation;
+    }
+
+    public String[] getNumericNames() {
+        return numericNames.clone();
+    }
+
+    public int[] getNumericColumn(int column) {
+        return readInts(metricsOffset + column * rows * Integer.BYTES);
+    }
+
+    // -1 se la metrica non esiste
+    public int indexOfNumeric(String name) {
+        for (int c = 0; c < numericNames.length; c++) {
+            if (numericNames[c].equals(name)) return c;
+        }
+        return -1;
+    }
+
+    public String[] getNominalNames() {
+        return nominalNames.clone();
+    }
+
+    // Codici della colonna nominale: indici in getNominalDictionary(column)
+    public int[] getNominalCodes(int column) {
+        return readInts(codesOffset + column * rows * Integer.BYTES);
+    }
+
+    public String[] getNominalDictionary(int column) {
+        return dictionaries[column].clone();
+    }
+
+    public boolean isBuggy(int row) {
+        long word = data.getLong(bugginessOffset + (row >>> 6) * Long.BYTES);
+        return (word & (1L << (row & 63))) != 0;
+    }
+
+    // Bugginess come 0/1 per riga
+    public double[] getBugginessValues() {
+        double[] values = new double[rows];
+        for (int r = 0; r < rows; r++) {
+            values[r] = isBuggy(r) ? 1.0 : 0.0;
+        }
+        return values;
+    }
+
+    // Instances con lo stesso header del file ARFF (nominali, metriche numeriche, classe {No,Yes}); classe non impostata
+    public Instances toInstances() {
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        for (int c = 0; c < nominalNames.length; c++) {
+            attributes.add(new Attribute(nominalNames[c], List.of(dictionaries[c])));
+        }
+        for (String name : numericNames) {
+            attributes.add(new Attribute(name));
+        }
+        attributes.add(new Attribute(DatasetSchema.CLASS_ATTRIBUTE, List.of(DatasetSchema.NO, DatasetSchema.YES)));
+
+        int[][] codes = new int[nominalNames.length][];
+        for (int c = 0; c < codes.length; c++) {
+            codes[c] = getNominalCodes(c);
+        }
+        int[][] metrics = new int[numericNames.length][];
+        for (int c = 0; c < metrics.length; c++) {
+            metrics[c] = getNumericColumn(c);
+        }
+
+        Instances instances = new Instances(relation, attributes, rows);
+        int width = attributes.size();
+        for (int r = 0; r < rows; r++) {
+            double[] values = new double[width];
+            int a = 0;
+            for (int[] column : codes) {
+                values[a++] = column[r];
+            }
+            for (int[] column : metrics) {
+                values[a++] = column[r];
+            }
+            values[a] = isBuggy(r) ? 1.0 : 0.0;
+            instances.add(new DenseInstance(1.0, values));
+        }
+        return instances;
+    }
+
+    private int[] readInts(int offset) {
+        int[] values = new int[rows];
+        ByteBuffer view = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        view.position(offset);
+        view.asIntBuffer().get(values);
+        return values;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int align8(int offset) {
+        return (offset + 7) & ~7;
+    }
+}
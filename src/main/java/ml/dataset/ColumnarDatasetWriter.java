@@ -0,0 +1,164 @@
+package ml.dataset;
+
+import analyzer.model.MethodInfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Scrive il dataset in formato binario colonnare (little endian), letto da ColumnarDataset:
+//   MAGIC, FORMAT_VERSION, righe, nome della relazione
+//   per ogni colonna nominale: nome, dizionario dei valori (ordine di prima apparizione)
+//   per ogni metrica: nome
+//   padding a 8 byte, poi i codici delle colonne nominali, le metriche (int per riga, colonna per colonna)
+//   e il bitset della Bugginess (long)
+// Le stringhe sono int di lunghezza + byte UTF-8.
+public final class ColumnarDatasetWriter {
+
+    static final int MAGIC = 0x4D445331; // "MDS1"
+    static final int FORMAT_VERSION = 1;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private ColumnarDatasetWriter() {
+        // Prevent instantiation
+    }
+
+    public static void write(Path path, String relation, List<MethodInfo> methods) throws IOException {
+        int rows = methods.size();
+        int nominalCount = DatasetSchema.NOMINAL_ATTRIBUTES.length;
+        int numericCount = DatasetSchema.NUMERIC_ATTRIBUTES.length;
+
+        List<Map<String, Integer>> dictionaries = List.of(new LinkedHashMap<>(), new LinkedHashMap<>(), new LinkedHashMap<>());
+        int[][] codes = new int[nominalCount][rows];
+        int[][] metrics = new int[numericCount][rows];
+        long[] buggy = new long[(rows + 63) / 64];
+
+        int[] rowMetrics = new int[numericCount];
+        MethodNames names = new MethodNames();
+        for (int r = 0; r < rows; r++) {
+            MethodInfo m = methods.get(r);
+            String[] nominals = DatasetSchema.nominalsOf(m, names);
+            for (int c = 0; c < nominalCount; c++) {
+                Map<String, Integer> dictionary = dictionaries.get(c);
+                codes[c][r] = dictionary.computeIfAbsent(nominals[c], k -> dictionary.size());
+            }
+            DatasetSchema.metricsOf(m, rowMetrics);
+            for (int c = 0; c < numericCount; c++) {
+                metrics[c][r] = rowMetrics[c];
+            }
+            if (m.isBugginess()) {
+                buggy[r >>> 6] |= 1L << (r & 63);
+            }
+        }
+
+        Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+
+            out.putInt(MAGIC);
+            out.putInt(FORMAT_VERSION);
+            out.putInt(rows);
+            out.putString(relation);
+
+            out.putInt(nominalCount);
+            for (int c = 0; c < nominalCount; c++) {
+                out.putString(DatasetSchema.NOMINAL_ATTRIBUTES[c]);
+                out.putInt(dictionaries.get(c).size());
+                for (String value : dictionaries.get(c).keySet()) {
+                    out.putString(value);
+                }
+            }
+
+            out.putInt(numericCount);
+            for (String name : DatasetSchema.NUMERIC_ATTRIBUTES) {
+                out.putString(name);
+            }
+
+            out.alignTo8();
+            for (int[] column : codes) {
+                out.putInts(column);
+            }
+            for (int[] column : metrics) {
+                out.putInts(column);
+            }
+            out.alignTo8();
+            for (long word : buggy) {
+                out.putLong(word);
+            }
+            out.flush();
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Buffer little endian scaricato sul canale quando è pieno; tiene traccia dell'offset per l'allineamento
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long written;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putInts(int[] values) throws IOException {
+            for (int value : values) {
+                putInt(value);
+            }
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+            }
+        }
+
+        void alignTo8() throws IOException {
+            while ((written + buffer.position()) % 8 != 0) {
+                ensure(1);
+                buffer.put((byte) 0);
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) flush();
+        }
+    }
+}
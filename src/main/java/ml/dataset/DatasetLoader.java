@@ -0,0 +1,78 @@
+package ml.dataset;
+
+import util.Configuration;
+import weka.core.Instances;
+import weka.core.converters.ConverterUtils.DataSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Level;
+
+// Caricamento del dataset per le analisi ML: se accanto all'ARFF c'è il file colonnare (.cols) non più vecchio
+// dell'ARFF, viene mappato in memoria invece di rileggere il testo; altrimenti si usa DataSource di Weka.
+// In entrambi i casi la classe è l'ultimo attributo (Bugginess).
+public final class DatasetLoader {
+
+    public static final String COLUMNAR_EXTENSION = ".cols";
+
+    private DatasetLoader() {
+        // Prevent instantiation
+    }
+
+    // File colonnare associato all'ARFF: stesso nome, estensione .cols
+    public static Path columnarPathFor(String arffPath) {
+        Path path = Paths.get(arffPath);
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return path.resolveSibling(base + COLUMNAR_EXTENSION);
+    }
+
+    // true se il file colonnare esiste ed è aggiornato rispetto all'ARFF (o l'ARFF non esiste)
+    public static boolean hasColumnar(String arffPath) {
+        Path columnar = columnarPathFor(arffPath);
+        return Files.isRegularFile(columnar) && isUpToDate(columnar, Paths.get(arffPath));
+    }
+
+    // Come hasColumnar(arffPath), ma il file colonnare deve essere aggiornato anche rispetto al CSV da cui deriva
+    public static boolean hasColumnar(String arffPath, String csvPath) {
+        return hasColumnar(arffPath) && isUpToDate(columnarPathFor(arffPath), Paths.get(csvPath));
+    }
+
+    // true se derived non è più vecchio di source (o source non esiste)
+    private static boolean isUpToDate(Path derived, Path source) {
+        try {
+            return !Files.exists(source)
+                    || Files.getLastModifiedTime(derived).compareTo(Files.getLastModifiedTime(source)) >= 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Colonne mappate del dataset, oppure null se il file colonnare manca, è vecchio o non è leggibile
+    public static ColumnarDataset loadColumnar(String arffPath) {
+        if (!hasColumnar(arffPath)) return null;
+        try {
+            return ColumnarDataset.load(columnarPathFor(arffPath));
+        } catch (IOException e) {
+            Configuration.logger.log(Level.WARNING, "Dataset colonnare non leggibile, uso l'ARFF", e);
+            return null;
+        }
+    }
+
+    public static Instances load(String arffPath) throws Exception {
+        ColumnarDataset columnar = loadColumnar(arffPath);
+        Instances data = columnar != null ? columnar.toInstances() : new DataSource(arffPath).getDataSet();
+        if (data.classIndex() == -1) {
+            data.setClassIndex(data.numAttributes() - 1);
+        }
+        return data;
+    }
+
+    // Dataset del progetto selezionato
+    public static Instances load() throws Exception {
+        return load(Configuration.getOutputArffPath());
+    }
+}
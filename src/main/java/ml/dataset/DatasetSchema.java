@@ -0,0 +1,47 @@
+package ml.dataset;
+
+import analyzer.model.MethodInfo;
+
+// Schema fisso del dataset: colonne nominali, metriche intere e classe, nell'ordine del CSV
+public final class DatasetSchema {
+
+    private DatasetSchema() {
+        // Prevent instantiation
+    }
+
+    public static final String[] NOMINAL_ATTRIBUTES = {"Project", "Method", "ReleaseID"};
+
+    public static final String[] NUMERIC_ATTRIBUTES = {
+            "LOC", "CyclomaticComplexity", "CognitiveComplexity", "Number of Smells", "ParameterCount", "NestingDepth",
+            "StatementCount", "LocalVariableCount", "ReturnTypeComplexity", "MethodHistories",
+            "StmtAdded", "StmtDeleted", "Churn", "DistinctAuthors"
+    };
+
+    public static final String CLASS_ATTRIBUTE = "Bugginess";
+    public static final String NO = "No";
+    public static final String YES = "Yes";
+
+    public static final int COLUMN_COUNT = NOMINAL_ATTRIBUTES.length + NUMERIC_ATTRIBUTES.length + 1;
+
+    public static String[] nominalsOf(MethodInfo m, MethodNames names) {
+        return new String[] {m.getProjectName(), names.of(m), m.getReleaseId()};
+    }
+
+    // Metriche del metodo nell'ordine di NUMERIC_ATTRIBUTES
+    public static void metricsOf(MethodInfo m, int[] target) {
+        target[0] = m.getLoc();
+        target[1] = m.getCyclomaticComplexity();
+        target[2] = m.getCognitiveComplexity();
+        target[3] = m.getNumberOfSmells();
+        target[4] = m.getParameterCount();
+        target[5] = m.getNestingDepth();
+        target[6] = m.getStatementCount();
+        target[7] = m.getLocalVariableCount();
+        target[8] = m.getReturnTypeComplexity();
+        target[9] = m.getMethodHistories();
+        target[10] = m.getStmtAdded();
+        target[11] = m.getStmtDeleted();
+        target[12] = m.getChurn();
+        target[13] = m.getDistinctAuthors();
+    }
+}
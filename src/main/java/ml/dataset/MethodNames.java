@@ -0,0 +1,19 @@
+package ml.dataset;
+
+import analyzer.model.MethodInfo;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Nomi completi dei metodi come valori nominali del dataset: ogni nome viene composto una volta sola per coppia
+// (id del path, nome semplice) e poi condiviso da tutte le righe del metodo, in tutte le release.
+public final class MethodNames {
+
+    private record Key(int pathId, String simpleName) {}
+
+    private final Map<Key, String> names = new HashMap<>();
+
+    public String of(MethodInfo m) {
+        return names.computeIfAbsent(new Key(m.getPathId(), m.getSimpleName()), k -> m.getMethodName());
+    }
+}
@@ -1,5 +1,6 @@
 package ml.evaluation;
 
+import util.Configuration;
 import weka.classifiers.Classifier;
 import weka.classifiers.bayes.NaiveBayes;
 import weka.classifiers.lazy.IBk;
@@ -31,7 +32,8 @@ public class ClassifierFactory {
         RandomForest rf = new RandomForest();
         rf.setNumIterations(100); // questo è spesso il nome corretto
         rf.setNumFeatures(0); // default (√n features)
-        rf.setNumExecutionSlots(Runtime.getRuntime().availableProcessors());
+        // Con la cross-validation parallela i worker sono già occupati dai fold: un solo slot per foresta
+        rf.setNumExecutionSlots(Configuration.ML_THREADS > 1 ? 1 : Runtime.getRuntime().availableProcessors());
         rf.setSeed(42);       // riproducibilità
         return rf;
     }
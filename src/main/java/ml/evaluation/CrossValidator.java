@@ -1,34 +1,77 @@
 package ml.evaluation;
 
 import ml.model.EvaluationResult;
+import util.Configuration;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.AggregateableEvaluation;
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
 import weka.core.Instances;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class CrossValidator {
 
+    // Pool condiviso: i fold di più classificatori valutati insieme si dividono gli stessi worker
+    private static final ForkJoinPool POOL = new ForkJoinPool(Configuration.ML_THREADS);
+
     private CrossValidator(){
         // Prevent instantiation
     }
 
     public static Evaluation evaluate(Classifier cls, Instances data, int seed, int folds, int repeats) throws Exception {
+        if (Configuration.ML_THREADS <= 1) {
+            return evaluateSequential(cls, data, seed, folds, repeats);
+        }
+
+        // Mescolamento sequenziale con lo stesso Random della versione sequenziale: stessi fold per ogni ripetizione.
+        // La copia mescolata di una ripetizione viene creata solo quando i suoi fold partono e rilasciata alla fine,
+        // così per ogni classificatore in memoria c'è una sola copia del dataset alla volta
+        Random rand = new Random(seed);
+        AggregateableEvaluation evaluation = new AggregateableEvaluation(data);
+        for (int i = 0; i < repeats; i++) {
+            Instances randData = shuffle(data, rand, folds);
+
+            // Un task per fold, ognuno con la sua copia del classificatore e la sua Evaluation
+            List<ForkJoinTask<Evaluation>> tasks = new ArrayList<>(folds);
+            for (int n = 0; n < folds; n++) {
+                int fold = n;
+                tasks.add(ForkJoinTask.adapt(() -> evaluateFold(cls, data, randData, folds, fold)));
+            }
+
+            runAll(tasks);
+
+            // Aggregazione nell'ordine (ripetizione, fold), come le chiamate a evaluateModel della versione sequenziale
+            for (ForkJoinTask<Evaluation> task : tasks) {
+                evaluation.aggregate(task.join());
+            }
+        }
+        return evaluation;
+    }
+
+    // Valutazioni lanciate insieme sul pool condiviso (es. più classificatori); il chiamante raccoglie i risultati in ordine
+    public static <T> ForkJoinTask<T> submit(Callable<T> task) {
+        return POOL.submit(task);
+    }
+
+    private static Evaluation evaluateSequential(Classifier cls, Instances data, int seed, int folds, int repeats) throws Exception {
         Evaluation evaluation = new Evaluation(data);
         Random rand = new Random(seed);
 
         for (int i = 0; i < repeats; i++) {
-            Instances randData = new Instances(data);
-            randData.randomize(rand);
-            if (randData.classAttribute().isNominal()) {
-                randData.stratify(folds);
-            }
+            Instances randData = shuffle(data, rand, folds);
 
             for (int n = 0; n < folds; n++) {
                 Instances train = randData.trainCV(folds, n);
                 Instances test = randData.testCV(folds, n);
 
-                Classifier clsCopy = weka.classifiers.AbstractClassifier.makeCopy(cls);
+                Classifier clsCopy = AbstractClassifier.makeCopy(cls);
                 clsCopy.buildClassifier(train);
                 evaluation.evaluateModel(clsCopy, test);
             }
@@ -36,6 +79,54 @@ public class CrossValidator {
         return evaluation;
     }
 
+    private static Instances shuffle(Instances data, Random rand, int folds) {
+        Instances randData = new Instances(data);
+        randData.randomize(rand);
+        if (randData.classAttribute().isNominal()) {
+            randData.stratify(folds);
+        }
+        return randData;
+    }
+
+    private static Evaluation evaluateFold(Classifier cls, Instances data, Instances randData, int folds, int fold) throws Exception {
+        Instances train = randData.trainCV(folds, fold);
+        Instances test = randData.testCV(folds, fold);
+
+        Classifier clsCopy = AbstractClassifier.makeCopy(cls);
+        clsCopy.buildClassifier(train);
+
+        Evaluation evaluation = new Evaluation(data);
+        evaluation.evaluateModel(clsCopy, test);
+        return evaluation;
+    }
+
+    // Da un worker del pool (valutazioni lanciate con submit) i task vengono eseguiti con l'aiuto del worker stesso,
+    // senza bloccarlo in attesa; altrimenti il chiamante attende il completamento sul pool
+    private static void runAll(List<ForkJoinTask<Evaluation>> tasks) throws Exception {
+        try {
+            if (ForkJoinTask.getPool() == POOL) {
+                ForkJoinTask.invokeAll(tasks);
+            } else {
+                POOL.submit(() -> ForkJoinTask.invokeAll(tasks)).get();
+            }
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (RuntimeException e) {
+            throw unwrap(e);
+        }
+    }
+
+    // Errore originale del task (ForkJoinTask.adapt avvolge le eccezioni checked in RuntimeException)
+    private static Exception unwrap(Throwable failure) {
+        Throwable cause = failure;
+        while (cause.getClass() == RuntimeException.class && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof Exception exception) return exception;
+        if (cause instanceof Error error) throw error;
+        return new IllegalStateException(failure);
+    }
+
     public static EvaluationResult evaluateAndWrap(String name, Classifier cls, Instances data, int seed, int folds, int repeats) throws Exception {
         Evaluation eval = evaluate(cls, data, seed, folds, repeats);
         double[][] cm = eval.confusionMatrix();
@@ -1,8 +1,8 @@
 package ml.stats;
 
+import ml.dataset.DatasetLoader;
 import util.Configuration;
 import weka.core.Instances;
-import weka.core.converters.ConverterUtils.DataSource;
 
 import java.io.FileWriter;
 import java.util.logging.Level;
@@ -13,11 +13,7 @@ public class AFMethodFinder {
 
         try {
             // === Carica dataset ===
-            DataSource source = new DataSource(Configuration.getOutputArffPath());
-            Instances data = source.getDataSet();
-            if (data.classIndex() == -1) {
-                data.setClassIndex(data.numAttributes() - 1);
-            }
+            Instances data = DatasetLoader.load();
 
             // === Seleziona AFeature dinamicamente ===
             String logicalAFeature = Configuration.SELECTED_PROJECT == util.ProjectType.BOOKKEEPER
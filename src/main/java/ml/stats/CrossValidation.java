@@ -2,12 +2,17 @@ package ml.stats;
 
 import ml.arff.CSVToARFFConverter;
 import ml.csv.EvaluationCsvWriter;
+import ml.dataset.DatasetLoader;
+import ml.evaluation.CrossValidator;
 import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
 import weka.core.Instances;
-import weka.core.converters.ConverterUtils.DataSource;
 import util.Configuration;
 import ml.evaluation.ClassifierFactory;
 import ml.model.EvaluationResult;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
 import java.util.logging.Level;
 
 
@@ -16,13 +21,16 @@ public class CrossValidation {
     private static final String RESULT_LABEL = "Risultato:";
     private static final String RESULT_FORMAT = "%s %s";
 
-    private static void evaluateAndLog(String name, Classifier classifier, Instances data) throws Exception {
+    // Avvia la valutazione sul pool condiviso della cross-validation, senza attenderla
+    private static ForkJoinTask<Evaluation> startEvaluation(String name, Classifier classifier, Instances data) {
         if (Configuration.logger.isLoggable(Level.INFO) && Configuration.ML_DEBUG) {
             Configuration.logger.info("\nValutazione " + name + " in corso...");
         }
 
-        weka.classifiers.Evaluation eval = ml.evaluation.CrossValidator.evaluate(classifier, data, 42, 10, 10);
+        return CrossValidator.submit(() -> CrossValidator.evaluate(classifier, data, 42, 10, 10));
+    }
 
+    private static void logAndWrite(String name, Evaluation eval) {
         double[][] cm = eval.confusionMatrix();
         double tp = cm[1][1];
         double tn = cm[0][0];
@@ -57,20 +65,16 @@ public class CrossValidation {
 
         try {
 
-            // === 1. Conversione da CSV a ARFF ===
-            if(Configuration.logger.isLoggable(Level.INFO) && Configuration.ML_DEBUG) Configuration.logger.info("Converto il file CSV in ARFF...");
-            CSVToARFFConverter.main(null);  // usa la tua classe esistente
-
-            // === 2. Caricamento del file ARFF ===
-            if(Configuration.logger.isLoggable(Level.INFO) && Configuration.ML_DEBUG) Configuration.logger.info("Carico il dataset ARFF...");
-            DataSource source = new DataSource(Configuration.getOutputArffPath());
-            Instances data = source.getDataSet();
-
-            // === 3. Impostazione dell'attributo target ===
-            if (data.classIndex() == -1) {
-                data.setClassIndex(data.numAttributes() - 1); // ultima colonna = bugginess
+            // === 1. Conversione da CSV a ARFF (non serve se c'è già il dataset colonnare aggiornato rispetto al CSV) ===
+            if (!DatasetLoader.hasColumnar(Configuration.getOutputArffPath(), Configuration.getOutputCsvPath())) {
+                if(Configuration.logger.isLoggable(Level.INFO) && Configuration.ML_DEBUG) Configuration.logger.info("Converto il file CSV in ARFF...");
+                CSVToARFFConverter.main(null);  // usa la tua classe esistente
             }
 
+            // === 2. Caricamento del dataset, 3. attributo target = ultima colonna (bugginess) ===
+            if(Configuration.logger.isLoggable(Level.INFO) && Configuration.ML_DEBUG) Configuration.logger.info("Carico il dataset...");
+            Instances data = DatasetLoader.load();
+
             // === 4. Info di controllo ===
             if(Configuration.logger.isLoggable(Level.INFO) && Configuration.ML_DEBUG) {
                 Configuration.logger.info("Dataset caricato correttamente.");
@@ -80,9 +84,15 @@ public class CrossValidation {
                 Configuration.logger.info("   - Valori possibili: " + data.classAttribute());
             }
 
-            evaluateAndLog("NaiveBayes", ClassifierFactory.getNaiveBayes(), data);
-            evaluateAndLog("RandomForest", ClassifierFactory.getRandomForest(), data);
-            evaluateAndLog("IBk", ClassifierFactory.getIBk(), data);
+            // I tre classificatori vengono valutati insieme; i risultati sono scritti nell'ordine di sempre
+            Map<String, ForkJoinTask<Evaluation>> evaluations = new LinkedHashMap<>();
+            evaluations.put("NaiveBayes", startEvaluation("NaiveBayes", ClassifierFactory.getNaiveBayes(), data));
+            evaluations.put("RandomForest", startEvaluation("RandomForest", ClassifierFactory.getRandomForest(), data));
+            evaluations.put("IBk", startEvaluation("IBk", ClassifierFactory.getIBk(), data));
+
+            for (Map.Entry<String, ForkJoinTask<Evaluation>> entry : evaluations.entrySet()) {
+                logAndWrite(entry.getKey(), entry.getValue().get());
+            }
 
         } catch (Exception e) {
             Configuration.logger.log(Level.SEVERE, "Errore in MLApp", e);
@@ -6,8 +6,8 @@ import weka.attributeSelection.Ranker;
 import weka.core.Instances;
 import weka.filters.Filter;
 import weka.filters.unsupervised.attribute.RemoveUseless;
-import weka.core.converters.ConverterUtils.DataSource;
 import weka.core.converters.ArffSaver;
+import ml.dataset.DatasetLoader;
 import util.Configuration;
 
 import java.io.File;
@@ -58,11 +58,7 @@ public class FeatureReducer {
         try {
             String project = Configuration.SELECTED_PROJECT.toString().toLowerCase();  // bookkeeper o openjpa
 
-            DataSource source = new DataSource(Configuration.getOutputArffPath());
-            Instances data = source.getDataSet();
-            if (data.classIndex() == -1) {
-                data.setClassIndex(data.numAttributes() - 1);
-            }
+            Instances data = DatasetLoader.load();
 
             Instances reduced = reduceFeatures(data, project);
             Configuration.logger.info("Feature selection completata con successo.");
@@ -1,12 +1,12 @@
 package ml.stats;
 
 import ml.csv.EvaluationCsvWriter;
+import ml.dataset.DatasetLoader;
 import ml.evaluation.CrossValidator;
 import ml.model.EvaluationResult;
 import util.Configuration;
 import weka.classifiers.lazy.IBk;
 import weka.core.Instances;
-import weka.core.converters.ConverterUtils.DataSource;
 
 import java.util.Random;
 import java.util.logging.Level;
@@ -19,10 +19,7 @@ public class IBkSamplerEvaluation {
     public static void main(String[] args) {
         try {
             // === Carica dataset completo ===
-            DataSource source = new DataSource(Configuration.getOutputArffPath());
-            Instances data = source.getDataSet();
-            if (data.classIndex() == -1)
-                data.setClassIndex(data.numAttributes() - 1);
+            Instances data = DatasetLoader.load();
 
             // === Esegui campionamento casuale ===
             data.randomize(new Random(SEED));
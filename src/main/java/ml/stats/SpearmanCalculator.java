@@ -1,75 +1,76 @@
 package ml.stats;
 
 import ml.csv.CorrelationCsvWriter;
+import ml.dataset.ColumnarDataset;
+import ml.dataset.DatasetLoader;
 import ml.stats.SpearmanWithPValue.Result;
 import util.Configuration;
 import weka.core.Attribute;
 import weka.core.Instances;
-import weka.core.converters.ConverterUtils.DataSource;
 
 import java.io.FileWriter;
+import java.io.IOException;
 import java.util.logging.Level;
 
 public class SpearmanCalculator {
 
+    private interface CorrelationConsumer {
+        void accept(String feature, Result result) throws IOException;
+    }
+
     public static void runOnCustomPath(String arffPath, String outputCsvPath) throws Exception {
-        DataSource source = new DataSource(arffPath);
-        Instances data = source.getDataSet();
-        if (data.classIndex() == -1) {
-            data.setClassIndex(data.numAttributes() - 1);
+        try (FileWriter writer = new FileWriter(outputCsvPath)) {
+            writer.write("Feature,Rho,PValue\n");
+            computeCorrelations(arffPath, (feature, result) ->
+                    writer.write(feature + "," + result.rho + "," + result.pValue + "\n"));
+        }
+    }
+
+    // Spearman di ogni feature numerica con la Bugginess, nell'ordine degli attributi.
+    // Con il dataset colonnare le colonne vengono lette direttamente, senza costruire le Instances.
+    private static void computeCorrelations(String arffPath, CorrelationConsumer consumer) throws Exception {
+        ColumnarDataset columnar = DatasetLoader.loadColumnar(arffPath);
+        if (columnar != null) {
+            double[] bugginess = columnar.getBugginessValues();
+            String[] names = columnar.getNumericNames();
+            for (int c = 0; c < names.length; c++) {
+                int[] column = columnar.getNumericColumn(c);
+                double[] featureValues = new double[column.length];
+                for (int j = 0; j < column.length; j++) {
+                    featureValues[j] = column[j];
+                }
+                consumer.accept(names[c], SpearmanWithPValue.compute(featureValues, bugginess));
+            }
+            return;
         }
 
+        Instances data = DatasetLoader.load(arffPath);
+
+        // === Prepara il vettore della bugginess come numerico ===
         double[] bugginess = new double[data.numInstances()];
         for (int i = 0; i < data.numInstances(); i++) {
             bugginess[i] = data.instance(i).stringValue(data.classIndex()).equals("Yes") ? 1.0 : 0.0;
         }
 
-        try (FileWriter writer = new FileWriter(outputCsvPath)) {
-            writer.write("Feature,Rho,PValue\n");
-            for (int i = 0; i < data.numAttributes() - 1; i++) {
-                Attribute attr = data.attribute(i);
-                if (!attr.isNumeric()) continue;
+        for (int i = 0; i < data.numAttributes() - 1; i++) {
+            Attribute attr = data.attribute(i);
+            if (!attr.isNumeric()) continue;
 
-                double[] featureValues = new double[data.numInstances()];
-                for (int j = 0; j < data.numInstances(); j++) {
-                    featureValues[j] = data.instance(j).value(attr);
-                }
-
-                SpearmanWithPValue.Result result = SpearmanWithPValue.compute(featureValues, bugginess);
-                writer.write(attr.name() + "," + result.rho + "," + result.pValue + "\n");
+            double[] featureValues = new double[data.numInstances()];
+            for (int j = 0; j < data.numInstances(); j++) {
+                featureValues[j] = data.instance(j).value(attr);
             }
+
+            consumer.accept(attr.name(), SpearmanWithPValue.compute(featureValues, bugginess));
         }
     }
 
 
     public static void main(String[] args) {
         try {
-            // === Caricamento dataset ARFF ===
-            DataSource source = new DataSource(Configuration.getOutputArffPath());
-            Instances data = source.getDataSet();
-            if (data.classIndex() == -1) {
-                data.setClassIndex(data.numAttributes() - 1);
-            }
-
-            // === Prepara il vettore della bugginess come numerico ===
-            double[] bugginess = new double[data.numInstances()];
-            for (int i = 0; i < data.numInstances(); i++) {
-                bugginess[i] = data.instance(i).stringValue(data.classIndex()).equals("Yes") ? 1.0 : 0.0;
-            }
-
             // === Calcola Spearman e p-value per ogni feature numerica ===
-            for (int i = 0; i < data.numAttributes() - 1; i++) {
-                Attribute attr = data.attribute(i);
-                if (!attr.isNumeric()) continue;
-
-                double[] featureValues = new double[data.numInstances()];
-                for (int j = 0; j < data.numInstances(); j++) {
-                    featureValues[j] = data.instance(j).value(attr);
-                }
-
-                Result result = SpearmanWithPValue.compute(featureValues, bugginess);
-                CorrelationCsvWriter.writeCorrelation(attr.name(), result.rho, result.pValue);
-            }
+            computeCorrelations(Configuration.getOutputArffPath(), (feature, result) ->
+                    CorrelationCsvWriter.writeCorrelation(feature, result.rho, result.pValue));
 
             if (Configuration.logger.isLoggable(Level.INFO)) {
                 Configuration.logger.info("Calcolo Spearman completato: " + Configuration.getCorrelationCsvPath());
@@ -11,6 +11,53 @@ public class Configuration {
     public static final boolean LABELING_DEBUG = false;
     public static final boolean ML_DEBUG = true;
 
+    // Legge gli snapshot delle release dall'object database invece di fare checkout del working tree
+    public static final boolean CHECKOUT_FREE_SNAPSHOT = true;
+
+    // Worker per l'analisi statica dei file di una release (1 = sequenziale)
+    public static final int ANALYSIS_THREADS = Runtime.getRuntime().availableProcessors();
+
+    // Worker per l'etichettatura dei ticket (1 = sequenziale)
+    public static final int LABELING_THREADS = Runtime.getRuntime().availableProcessors();
+
+    // Worker per i fold della cross-validation, condivisi tra i classificatori valutati insieme (1 = sequenziale)
+    public static final int ML_THREADS = Runtime.getRuntime().availableProcessors();
+
+    // Proportion: false = media su tutti i ticket con AV; true = solo ticket con fix precedente a quello da stimare,
+    // limitati agli ultimi PROPORTION_WINDOW (0 = nessun limite)
+    public static final boolean PROPORTION_FIXED_BEFORE = false;
+    public static final int PROPORTION_WINDOW = 0;
+
+    // Cache su disco delle metriche statiche per SHA del blob, condivisa tra release e tra run
+    public static final boolean USE_STATIC_METRICS_CACHE = true;
+    public static final String STATIC_METRICS_CACHE_DIR = ConfigurationLoader.get("cache.static_metrics_dir");
+
+    // Limiti delle cache per commit in GitRepository (path memorizzati / commit)
+    public static final long TOUCHED_FILES_CACHE_MAX_PATHS = 500_000;
+    public static final long COMMIT_AUTHOR_CACHE_MAX_ENTRIES = 200_000;
+    public static final long RESOLVED_COMMIT_CACHE_MAX_ENTRIES = 200_000;
+
+    // Edit list per commit tenute in memoria; oltre il limite le voci espulse possono essere scritte su disco
+    public static final long DIFF_CACHE_MAX_EDITS = 2_000_000;
+    public static final boolean SPILL_DIFF_CACHE = false;
+    public static final String DIFF_SPILL_DIR = ConfigurationLoader.get("cache.diff_spill_dir");
+
+    // Snapshot locale delle risposte JIRA (LIVE, CACHED, OFFLINE, REFRESH)
+    public static final JiraSnapshotMode JIRA_SNAPSHOT_MODE = JiraSnapshotMode.fromProperty(ConfigurationLoader.get("jira.snapshot_mode"));
+    public static final String JIRA_SNAPSHOT_DIR = ConfigurationLoader.get("cache.jira_snapshot_dir");
+
+    // API REST di JIRA: pagine della ricerca scaricate in parallelo e tentativi per richiesta
+    public static final String JIRA_BASE_URL = ConfigurationLoader.get("jira.base_url");
+    public static final int JIRA_FETCH_THREADS = 4;
+    public static final int JIRA_MAX_ATTEMPTS = 4;
+
+    // Campioni del cold start salvati su disco; true = scarta quelli salvati e ricalcola tutti i progetti
+    public static final String COLD_START_CACHE_FILE = ConfigurationLoader.get("cache.cold_start_file");
+    public static final boolean RECOMPUTE_COLD_START = false;
+
+    // ARFF in formato sparso (solo i valori diversi da zero)
+    public static final boolean SPARSE_ARFF = false;
+
     public static final Logger logger = Logger.getLogger(Configuration.class.getName());
 
     public static final String PROJECT1_NAME = ConfigurationLoader.get("project1.name");
@@ -55,6 +102,11 @@ public class Configuration {
         return (SELECTED_PROJECT == ProjectType.BOOKKEEPER) ? OUTPUT_CSV1_PATH : OUTPUT_CSV2_PATH;
     }
 
+    // Etichette Bugginess in formato compatto, accanto al CSV
+    public static String getOutputLabelsPath() {
+        return getOutputCsvPath() + ".labels";
+    }
+
     public static String getOutputArffPath() {
         return (SELECTED_PROJECT == ProjectType.BOOKKEEPER) ? OUTPUT_ARFF1_PATH : OUTPUT_ARFF2_PATH;
     }
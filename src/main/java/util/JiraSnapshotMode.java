@@ -0,0 +1,14 @@
+package util;
+
+// Come vengono ottenute le risposte JIRA rispetto allo snapshot locale
+public enum JiraSnapshotMode {
+    LIVE,     // sempre da JIRA, lo snapshot non viene né letto né scritto
+    CACHED,   // dallo snapshot se presente, altrimenti da JIRA salvando lo snapshot
+    OFFLINE,  // solo dallo snapshot; errore se manca
+    REFRESH;  // dallo snapshot più i ticket aggiornati dopo l'ultimo download (updated >=)
+
+    public static JiraSnapshotMode fromProperty(String value) {
+        if (value == null || value.isBlank()) return CACHED;
+        return valueOf(value.trim().toUpperCase());
+    }
+}
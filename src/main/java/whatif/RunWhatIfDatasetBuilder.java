@@ -1,8 +1,8 @@
 package whatif;
 
+import ml.dataset.DatasetLoader;
 import util.Configuration;
 import weka.core.Instances;
-import weka.core.converters.ConverterUtils.DataSource;
 
 public class RunWhatIfDatasetBuilder {
 
@@ -13,13 +13,7 @@ public class RunWhatIfDatasetBuilder {
             // Carica il dataset A (dal path corretto in base al progetto)
             String arffPath = Configuration.getOutputArffPath();
             Configuration.logger.info("Caricamento dataset A da: " + arffPath);
-            Instances datasetA = new DataSource(arffPath).getDataSet();
-
-
-            // Imposta l'attributo target se necessario
-            if (datasetA.classIndex() == -1) {
-                datasetA.setClassIndex(datasetA.numAttributes() - 1); // assumiamo ultima colonna = bugginess
-            }
+            Instances datasetA = DatasetLoader.load(arffPath); // ultima colonna = bugginess
 
             // Costruisci B+, C, B
             WhatIfDatasetBuilder builder = new WhatIfDatasetBuilder("whatif/");
@@ -1,5 +1,6 @@
 package whatif;
 
+import ml.dataset.DatasetLoader;
 import ml.evaluation.ClassifierFactory;
 import util.Configuration;
 import util.ProjectType;
@@ -8,7 +9,6 @@ import weka.classifiers.trees.RandomForest;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Utils;
-import weka.core.converters.ConverterUtils.DataSource;
 import weka.filters.Filter;
 import weka.filters.supervised.instance.Resample;
 
@@ -77,11 +77,7 @@ public class WhatIfPredictor {
     }
 
     private static Instances loadDataset(String path) throws Exception {
-        Instances data = new DataSource(path).getDataSet();
-        if (data.classIndex() == -1) {
-            data.setClassIndex(data.numAttributes() - 1); // ultima colonna = Bugginess
-        }
-        return data;
+        return DatasetLoader.load(path); // ultima colonna = Bugginess
     }
 
     private static PredictionSummary predict(String name, Instances data, Classifier model) throws Exception {
@@ -1,12 +1,12 @@
 package whatif;
 
+import ml.dataset.DatasetLoader;
 import ml.stats.SpearmanWithPValue;
 import ml.stats.SpearmanWithPValue.Result;
 import util.Configuration;
 import weka.core.Attribute;
 import weka.core.Instances;
 import weka.core.converters.ArffSaver;
-import weka.core.converters.ConverterUtils.DataSource;
 import weka.filters.Filter;
 import weka.filters.unsupervised.attribute.Remove;
 
@@ -21,10 +21,7 @@ public class WhatIfTheoreticalTest {
 
             // === 1. Carica il dataset originale ===
             String inputPath = Configuration.getOutputArffPath();
-            Instances data = new DataSource(inputPath).getDataSet();
-            if (data.classIndex() == -1) {
-                data.setClassIndex(data.numAttributes() - 1);
-            }
+            Instances data = DatasetLoader.load(inputPath);
 
             // === 2. Rimuovi StmtAdded, StmtDeleted e Churn ===
             Remove remove = new Remove();